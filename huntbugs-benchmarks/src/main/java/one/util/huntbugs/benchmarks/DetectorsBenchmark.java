@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.strobel.assembler.metadata.TypeDefinition;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import one.util.huntbugs.analysis.AnalysisOptions;
+import one.util.huntbugs.analysis.Context;
+import one.util.huntbugs.registry.DetectorRegistry;
+
+/**
+ * Analysis of already loaded classes: AST building, values flow and the detectors invocation via
+ * MethodContext.visitNode dispatch
+ * 
+ * @author lan
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DetectorsBenchmark {
+    @Param
+    public Input input;
+
+    private DetectorRegistry registry;
+    private List<TypeDefinition> types;
+
+    @Setup
+    public void setup() {
+        AnalysisOptions options = new AnalysisOptions();
+        Context ctx = new Context(null, options);
+        ctx.setWarningSink(new NullWarningSink());
+        registry = new DetectorRegistry(ctx);
+        types = input.loadTypes();
+        types.forEach(registry::populateDatabases);
+    }
+
+    @Benchmark
+    public int analyzeClasses() {
+        for (TypeDefinition type : types) {
+            if (type.getDeclaringType() == null)
+                registry.analyzeClass(type);
+        }
+        return types.size();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.strobel.decompiler.ast.Block;
+import com.strobel.decompiler.ast.Condition;
+import com.strobel.decompiler.ast.Node;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import one.util.huntbugs.analysis.AnalysisOptions;
+import one.util.huntbugs.analysis.Context;
+import one.util.huntbugs.benchmarks.Input.MethodAst;
+import one.util.huntbugs.flow.ValuesFlow;
+import one.util.huntbugs.util.Equi;
+
+/**
+ * Structural comparison of AST blocks: every block with itself (full traversal) and the branches of every condition
+ * (typical detector usage, usually exits early)
+ * 
+ * @author lan
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EquiBenchmark {
+    @Param
+    public Input input;
+
+    private final List<Block> left = new ArrayList<>();
+    private final List<Block> right = new ArrayList<>();
+
+    @Setup
+    public void setup() {
+        Context ctx = new Context(null, new AnalysisOptions());
+        for (MethodAst ast : Input.buildAsts(input.loadTypes())) {
+            ValuesFlow.annotate(ctx, ast.md, ast.body);
+            collectPairs(ast.body);
+        }
+    }
+
+    private void collectPairs(Node node) {
+        if (node instanceof Block) {
+            left.add((Block) node);
+            right.add((Block) node);
+        }
+        if (node instanceof Condition) {
+            Condition cond = (Condition) node;
+            if (cond.getFalseBlock() != null) {
+                left.add(cond.getTrueBlock());
+                right.add(cond.getFalseBlock());
+            }
+        }
+        for (Node child : node.getChildren())
+            collectPairs(child);
+    }
+
+    @Benchmark
+    public int equiBlocks() {
+        int count = 0;
+        for (int i = 0; i < left.size(); i++) {
+            if (Equi.equiBlocks(left.get(i), right.get(i)))
+                count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import com.strobel.assembler.metadata.ClasspathTypeLoader;
+import com.strobel.assembler.metadata.CompositeTypeLoader;
+import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.assembler.metadata.MethodBody;
+import com.strobel.assembler.metadata.MethodDefinition;
+import com.strobel.assembler.metadata.TypeDefinition;
+import com.strobel.assembler.metadata.TypeReference;
+import com.strobel.decompiler.DecompilerContext;
+import com.strobel.decompiler.ast.AstBuilder;
+import com.strobel.decompiler.ast.AstOptimizationStep;
+import com.strobel.decompiler.ast.AstOptimizer;
+import com.strobel.decompiler.ast.Block;
+
+import one.util.huntbugs.analysis.AnalysisOptions;
+import one.util.huntbugs.analysis.Context;
+import one.util.huntbugs.repo.DirRepository;
+import one.util.huntbugs.repo.JarRepository;
+import one.util.huntbugs.repo.Repository;
+import one.util.huntbugs.repo.RepositoryVisitor;
+import one.util.huntbugs.testdata.TestFloatNaN;
+
+/**
+ * Classes the benchmarks are run on
+ * 
+ * @author lan
+ *
+ */
+public enum Input {
+    /**
+     * HuntBugs test data (small classes with many warnings)
+     */
+    TESTDATA("one/util/huntbugs/testdata") {
+        @Override
+        Repository createRepository() {
+            return codeSourceRepository(TestFloatNaN.class);
+        }
+    },
+    /**
+     * HuntBugs itself including the test data (mid-size input)
+     */
+    HUNTBUGS("one/util/huntbugs") {
+        @Override
+        Repository createRepository() {
+            return codeSourceRepository(Context.class);
+        }
+    },
+    /**
+     * java.util package and subpackages from JDK rt.jar (large input)
+     */
+    JAVA_UTIL("java/util") {
+        @Override
+        Repository createRepository() {
+            Path rtJar = Paths.get(System.getProperty("java.home"), "lib", "rt.jar");
+            if (!Files.isRegularFile(rtJar))
+                throw new IllegalStateException("rt.jar is not found: JDK 8 is required for " + this);
+            return jarRepository(rtJar);
+        }
+    };
+
+    private final String packageName;
+
+    private Input(String packageName) {
+        this.packageName = packageName;
+    }
+
+    abstract Repository createRepository();
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    /**
+     * Analyzes the input
+     * 
+     * @param options analysis options
+     * @return context after the analysis
+     */
+    public Context analyze(AnalysisOptions options) {
+        Context ctx = new Context(createRepository(), options);
+        ctx.analyzePackage(packageName);
+        return ctx;
+    }
+
+    /**
+     * @return all the classes of the input (including nested) resolved by the fresh {@link MetadataSystem}
+     */
+    public List<TypeDefinition> loadTypes() {
+        Repository repo = createRepository();
+        MetadataSystem ms = new MetadataSystem(new CompositeTypeLoader(new ClasspathTypeLoader(System
+                .getProperty("sun.boot.class.path")), repo.createTypeLoader()));
+        TreeSet<String> names = new TreeSet<>();
+        repo.visit(packageName, new RepositoryVisitor() {
+            @Override
+            public boolean visitPackage(String packageName) {
+                return true;
+            }
+
+            @Override
+            public void visitClass(String className) {
+                names.add(className);
+            }
+        });
+        List<TypeDefinition> types = new ArrayList<>();
+        for (String name : names) {
+            TypeReference tr = ms.lookupType(name);
+            TypeDefinition td = tr == null ? null : tr.resolve();
+            if (td != null)
+                collectTypes(td, types);
+        }
+        return types;
+    }
+
+    private static void collectTypes(TypeDefinition td, List<TypeDefinition> types) {
+        types.add(td);
+        for (TypeDefinition subType : td.getDeclaredTypes())
+            collectTypes(subType, types);
+    }
+
+    /**
+     * A method with its optimized AST as passed to the detectors
+     */
+    public static class MethodAst {
+        public final MethodDefinition md;
+        public final Block body;
+
+        MethodAst(MethodDefinition md, Block body) {
+            this.md = md;
+            this.body = body;
+        }
+    }
+
+    /**
+     * @param types types to decompile
+     * @return ASTs of all the methods which can be analyzed with default options
+     */
+    public static List<MethodAst> buildAsts(List<TypeDefinition> types) {
+        int maxMethodSize = new AnalysisOptions().maxMethodSize;
+        List<MethodAst> result = new ArrayList<>();
+        for (TypeDefinition type : types) {
+            for (MethodDefinition md : type.getDeclaredMethods()) {
+                MethodBody body = md.getBody();
+                if (body == null || body.getCodeSize() > maxMethodSize)
+                    continue;
+                DecompilerContext context = new DecompilerContext();
+                context.setCurrentMethod(md);
+                context.setCurrentType(type);
+                Block methodAst = new Block();
+                try {
+                    methodAst.getBody().addAll(AstBuilder.build(body, true, context));
+                    AstOptimizer.optimize(context, methodAst, AstOptimizationStep.None);
+                } catch (Throwable t) {
+                    // The same method fails during the analysis: skip it
+                    continue;
+                }
+                result.add(new MethodAst(md, methodAst));
+            }
+        }
+        return result;
+    }
+
+    static Repository codeSourceRepository(Class<?> clazz) {
+        Path path;
+        try {
+            path = new File(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()).toPath();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+        return Files.isDirectory(path) ? new DirRepository(path) : jarRepository(path);
+    }
+
+    static Repository jarRepository(Path path) {
+        try {
+            return new JarRepository(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.benchmarks;
+
+import java.util.stream.Stream;
+
+import one.util.huntbugs.analysis.WarningSink;
+import one.util.huntbugs.warning.Warning;
+
+/**
+ * Discards the warnings, so repeated analysis does not accumulate them
+ * 
+ * @author lan
+ *
+ */
+public class NullWarningSink implements WarningSink {
+    @Override
+    public void add(Warning warning) {
+        // ignore
+    }
+
+    @Override
+    public Stream<Warning> warnings() {
+        return Stream.empty();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import one.util.huntbugs.analysis.AnalysisOptions;
+import one.util.huntbugs.analysis.Context;
+import one.util.huntbugs.output.Reports;
+import one.util.huntbugs.warning.Formatter;
+import one.util.huntbugs.warning.Warning;
+
+/**
+ * Formatting of warning messages and writing the XML and HTML reports
+ * 
+ * @author lan
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportsBenchmark {
+    @Param
+    public Input input;
+
+    private Context ctx;
+    private List<Warning> warnings;
+    private Path dir;
+
+    @Setup
+    public void setup() throws IOException {
+        ctx = input.analyze(new AnalysisOptions());
+        try (Stream<Warning> stream = ctx.warnings()) {
+            warnings = stream.collect(Collectors.toList());
+        }
+        dir = Files.createTempDirectory("huntbugs-bench");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator)
+                Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public void format(Blackhole bh) {
+        Formatter formatter = new Formatter(ctx.getMessages());
+        for (Warning warning : warnings) {
+            bh.consume(formatter.getTitle(warning));
+            bh.consume(formatter.getDescription(warning));
+            bh.consume(formatter.getLongDescription(warning));
+        }
+    }
+
+    @Benchmark
+    public void write() {
+        Reports.write(dir.resolve("report.xml"), dir.resolve("report.html"), ctx);
+    }
+}
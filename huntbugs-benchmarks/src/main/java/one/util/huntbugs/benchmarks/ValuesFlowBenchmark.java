@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import one.util.huntbugs.analysis.AnalysisOptions;
+import one.util.huntbugs.analysis.Context;
+import one.util.huntbugs.benchmarks.Input.MethodAst;
+import one.util.huntbugs.flow.ValuesFlow;
+
+/**
+ * Values flow annotation of prebuilt method ASTs. Dominated by Frame.process and Frame.merge (the Frame class is not
+ * accessible outside of its package, so it's measured through ValuesFlow).
+ * 
+ * @author lan
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ValuesFlowBenchmark {
+    @Param
+    public Input input;
+
+    private Context ctx;
+    private List<MethodAst> asts;
+
+    @Setup
+    public void setup() {
+        ctx = new Context(null, new AnalysisOptions());
+        asts = Input.buildAsts(input.loadTypes());
+    }
+
+    @Benchmark
+    public void annotate(Blackhole bh) {
+        for (MethodAst ast : asts) {
+            bh.consume(ValuesFlow.annotate(ctx, ast.md, ast.body));
+        }
+    }
+}
@@ -70,6 +70,26 @@ public class HuntBugsMojo extends AbstractMojo {
     @Parameter(defaultValue = "30", property = "minScore", required = true)
     private int minScore;
     
+    /**
+     * Number of threads to analyze classes
+     */
+    @Parameter(defaultValue = "1", property = "threads", required = true)
+    private int threads;
+    
+    /**
+     * Reuse the results of previous analysis for unchanged classes. A class is considered unchanged if its class files
+     * and supertypes are the same. Changes in other classes it refers to (like annotations of called methods) are not
+     * tracked, so run a clean build after updating the dependencies.
+     */
+    @Parameter(defaultValue = "false", property = "incremental", required = true)
+    private boolean incremental;
+    
+    /**
+     * Directory to store the snapshots of type databases for dependency jars (may be shared between the projects)
+     */
+    @Parameter(property = "snapshotDirectory")
+    private File snapshotDirectory;
+    
     /**
      * Do not print progress messages
      */
@@ -93,6 +113,7 @@ public class HuntBugsMojo extends AbstractMojo {
                 getLog().info("HuntBugs: +dir "+classesDirectory);
             }
             List<ITypeLoader> deps = new ArrayList<>();
+            List<Path> depJars = new ArrayList<>();
             ArtifactRepository localRepository = session.getLocalRepository();
             for(Artifact art : project.getDependencyArtifacts()) {
                 if(art.getScope().equals("compile")) {
@@ -103,6 +124,9 @@ public class HuntBugsMojo extends AbstractMojo {
                             getLog().info("HuntBugs: +dep "+path);
                         }
                         if(Files.isRegularFile(path)) {
+                            // Only jars which are not preceded by directories can be snapshotted
+                            if(depJars.size() == deps.size())
+                                depJars.add(path);
                             deps.add(new JarTypeLoader(new JarFile(path.toFile())));
                         } else if(Files.isDirectory(path)){
                             deps.add(new ClasspathTypeLoader(path.toString()));
@@ -112,9 +136,18 @@ public class HuntBugsMojo extends AbstractMojo {
             }
             if(!deps.isEmpty())
                 repo = new CompositeRepository(Arrays.asList(repo, new AuxRepository(new CompositeTypeLoader(deps
-                        .toArray(new ITypeLoader[0])))));
+                        .toArray(new ITypeLoader[0])), depJars)));
             AnalysisOptions options = new AnalysisOptions();
             options.minScore = minScore;
+            options.threads = threads;
+            Path path = outputDirectory.toPath();
+            Files.createDirectories(path);
+            if(incremental) {
+                options.cacheFile = path.resolve("huntbugs.cache").toString();
+            }
+            if(snapshotDirectory != null) {
+                options.snapshotDir = snapshotDirectory.toString();
+            }
             Context ctx = new Context(repo, options);
             long[] lastPrint = {0};
             if(!quiet) {
@@ -126,13 +159,15 @@ public class HuntBugsMojo extends AbstractMojo {
                     return true;
                 });
             }
-            ctx.analyzePackage("");
-            getLog().info("HuntBugs: Writing report (" + ctx.getStat("Warnings") + " warnings)");
-            Path path = outputDirectory.toPath();
-            Files.createDirectories(path);
-            Path xmlFile = path.resolve("report.xml");
-            Path htmlFile = path.resolve("report.html");
-            Reports.write(xmlFile, htmlFile, ctx);
+            try {
+                ctx.analyzePackage("");
+                getLog().info("HuntBugs: Writing report (" + ctx.getStat("Warnings") + " warnings)");
+                Path xmlFile = path.resolve("report.xml");
+                Path htmlFile = path.resolve("report.html");
+                Reports.write(xmlFile, htmlFile, ctx);
+            } finally {
+                ctx.close();
+            }
         } catch (Exception e) {
             throw new MojoExecutionException("Failed to run HuntBugs", e);
         }
@@ -26,7 +26,6 @@ import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.jar.JarFile;
 
 import one.util.huntbugs.analysis.AnalysisOptions;
 import one.util.huntbugs.analysis.Context;
@@ -126,7 +125,7 @@ public class HuntBugs {
 
     private Repository createRepository(Path path) {
         try {
-            return Files.isDirectory(path) ? new DirRepository(path) : new JarRepository(new JarFile(path.toFile()));
+            return Files.isDirectory(path) ? new DirRepository(path) : new JarRepository(path);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -202,6 +201,8 @@ public class HuntBugs {
                     Reports.write(Paths.get("huntbugs.warnings.xml"), Paths.get("huntbugs.warnings.html"), ctx);
                 } catch (IOException e) {
                     throw new UncheckedIOException(e);
+                } finally {
+                    ctx.close();
                 }
                 long end = System.nanoTime();
                 Duration dur = Duration.ofNanos(end - start);
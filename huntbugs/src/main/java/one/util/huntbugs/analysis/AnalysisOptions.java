@@ -31,6 +31,13 @@ public class AnalysisOptions {
     public int maxMethodSize = 8000;
     public int minScore = 1;
     public int loopTraversalIterations = 5;
+    public int loopWideningIterations = 2;
+    public int threads = 1;
+    public String cacheFile = "";
+    public String snapshotDir = "";
+    public int maxWarningsInMemory = 0;
+    public boolean profileDetectors = false;
+    public int maxTypeCacheSize = 8 * 1024 * 1024;
     private Rule rule = Rule.NULL;
 
     public void set(String name, String valueString) {
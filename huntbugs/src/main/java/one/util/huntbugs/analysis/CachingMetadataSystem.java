@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.analysis;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+import com.strobel.assembler.metadata.Buffer;
+import com.strobel.assembler.metadata.ClassFileReader;
+import com.strobel.assembler.metadata.ITypeLoader;
+import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.assembler.metadata.TypeDefinition;
+
+/**
+ * {@link MetadataSystem} which keeps the resolved types in the LRU cache bounded by the total size of their class
+ * files. Frequently referenced types stay resident, while rarely used ones are evicted. Eviction happens only in
+ * {@link #trim()}, so the types are not replaced while the class is being analyzed.
+ * 
+ * @author lan
+ *
+ */
+class CachingMetadataSystem extends MetadataSystem {
+    private static final Set<String> PRIMITIVE_NAMES = new HashSet<>(Arrays.asList("boolean", "byte", "char",
+        "short", "int", "long", "float", "double", "void"));
+    // TypeDefinition.setTypeLoader is package-private, but the loader is necessary to read the method bodies lazily
+    private static final MethodHandle SET_TYPE_LOADER;
+
+    static {
+        SET_TYPE_LOADER = AccessController.doPrivileged((PrivilegedAction<MethodHandle>) () -> {
+            try {
+                Method m = TypeDefinition.class.getDeclaredMethod("setTypeLoader", ITypeLoader.class);
+                m.setAccessible(true);
+                return MethodHandles.lookup().unreflect(m);
+            } catch (NoSuchMethodException | SecurityException | IllegalAccessException e) {
+                throw new InternalError(e);
+            }
+        });
+    }
+
+    private final ITypeLoader loader;
+    private final long maxSize;
+    private final LinkedHashMap<String, CachedType> types = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    private static class CachedType {
+        final TypeDefinition type;
+        final int size;
+
+        CachedType(TypeDefinition type, int size) {
+            this.type = type;
+            this.size = size;
+        }
+    }
+
+    /**
+     * @param loader type loader to read the classes
+     * @param maxSize maximal total size of the class files of cached types in bytes
+     */
+    CachingMetadataSystem(ITypeLoader loader, long maxSize) {
+        super(loader);
+        this.loader = loader;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    protected synchronized TypeDefinition resolveType(String descriptor, boolean mightBePrimitive) {
+        if (mightBePrimitive && (descriptor.length() == 1 || PRIMITIVE_NAMES.contains(descriptor)))
+            return super.resolveType(descriptor, true);
+        CachedType cached = types.get(descriptor);
+        if (cached != null)
+            return cached.type;
+        Buffer buffer = new Buffer(0);
+        if (!loader.tryLoadType(descriptor, buffer))
+            return null;
+        TypeDefinition type = ClassFileReader.readClass(isEagerMethodLoadingEnabled()
+            ? ClassFileReader.OPTION_PROCESS_ANNOTATIONS | ClassFileReader.OPTION_PROCESS_CODE
+            : ClassFileReader.OPTIONS_DEFAULT, this, buffer);
+        // Reading may resolve other types, including this one
+        cached = types.get(descriptor);
+        if (cached != null)
+            return cached.type;
+        try {
+            SET_TYPE_LOADER.invokeExact(type, loader);
+        } catch (Throwable e) {
+            throw new InternalError(e);
+        }
+        add(descriptor, new CachedType(type, buffer.size()));
+        return type;
+    }
+
+    @Override
+    public synchronized void addTypeDefinition(TypeDefinition type) {
+        if (!types.containsKey(type.getInternalName()))
+            add(type.getInternalName(), new CachedType(type, 0));
+    }
+
+    private void add(String name, CachedType cached) {
+        types.put(name, cached);
+        size += cached.size;
+    }
+
+    /**
+     * Evicts the least recently used types until the cache fits the size limit
+     */
+    synchronized void trim() {
+        Iterator<CachedType> it = types.values().iterator();
+        while (size > maxSize && it.hasNext()) {
+            size -= it.next().size;
+            it.remove();
+        }
+    }
+}
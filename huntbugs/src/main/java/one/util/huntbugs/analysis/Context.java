@@ -15,32 +15,48 @@
  */
 package one.util.huntbugs.analysis;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import com.strobel.assembler.ir.ConstantPool;
 import com.strobel.assembler.ir.ConstantPool.TypeInfoEntry;
-import com.strobel.assembler.metadata.ClasspathTypeLoader;
-import com.strobel.assembler.metadata.CompositeTypeLoader;
 import com.strobel.assembler.metadata.ITypeLoader;
 import com.strobel.assembler.metadata.MetadataSystem;
 import com.strobel.assembler.metadata.TypeDefinition;
 import com.strobel.assembler.metadata.TypeReference;
 
+import one.util.huntbugs.db.Hierarchy;
+import one.util.huntbugs.registry.DetectorProfile;
 import one.util.huntbugs.registry.DetectorRegistry;
 import one.util.huntbugs.repo.Repository;
 import one.util.huntbugs.repo.RepositoryVisitor;
+import one.util.huntbugs.util.SubtypeCache;
 import one.util.huntbugs.warning.Messages;
 import one.util.huntbugs.warning.Warning;
 import one.util.huntbugs.warning.WarningType;
@@ -50,8 +66,10 @@ import one.util.huntbugs.warning.WarningType;
  *
  */
 public class Context {
+    private static final int CLASSES_IN_FLIGHT_PER_THREAD = 32;
+
     private final List<ErrorMessage> errors = Collections.synchronizedList(new ArrayList<>());
-    private final List<Warning> warnings = Collections.synchronizedList(new ArrayList<>());
+    private WarningSink warnings;
     private final Set<String> missingClasses = ConcurrentHashMap.newKeySet();
     private final DetectorRegistry registry;
     private final Repository repository;
@@ -61,19 +79,30 @@ public class Context {
     private final List<AnalysisListener> listeners = new CopyOnWriteArrayList<>();
     private final Map<String, Long> stat = new ConcurrentHashMap<>();
     private Messages msgs;
-    private final ITypeLoader loader;
+    private WarningCache cache;
+    private List<DatabaseSnapshot> snapshots = Collections.emptyList();
+    // Results of the class currently analyzed by the parallel worker thread
+    private final ThreadLocal<ClassResult> currentClass = new ThreadLocal<>();
 
     public Context(Repository repository, AnalysisOptions options) {
         this.options = options;
         registry = new DetectorRegistry(this);
         this.repository = repository == null ? Repository.createNullRepository() : repository;
-        ITypeLoader loader = this.repository.createTypeLoader();
-        if (options.addBootClassPath) {
-            loader = new CompositeTypeLoader(new ClasspathTypeLoader(System.getProperty("sun.boot.class.path")), loader);
-        }
-        this.loader = loader;
+        this.warnings = options.maxWarningsInMemory > 0 ? new FileWarningSink(options.maxWarningsInMemory, null,
+                registry::getWarningType) : new MemoryWarningSink();
     }
-    
+
+    /**
+     * Replaces the storage of the reported warnings. Must be called before the analysis.
+     * 
+     * @param sink new warning sink
+     */
+    public void setWarningSink(WarningSink sink) {
+        WarningSink old = this.warnings;
+        this.warnings = Objects.requireNonNull(sink);
+        old.close();
+    }
+
     public Messages getMessages() {
         if(msgs == null) {
             msgs = Messages.load();
@@ -113,30 +142,50 @@ public class Context {
             }
         });
         totalClasses = classes.size();
+        // Created before the classes are read, so the cache can hash the class files loaded by the analysis
+        if (!options.cacheFile.isEmpty()) {
+            cache = new WarningCache(Paths.get(options.cacheFile), getFingerprint(), registry::getWarningType, registry
+                    .getDatabase(Hierarchy.class), () -> options.addBootClassPath ? SharedTypeLoader
+                            .withBootClassPath(repository.createTypeLoader()) : repository.createTypeLoader());
+        }
         if(registry.hasDatabases()) {
             if(!preparingClasses(classes))
                 return;
         }
-        analyzingClasses(classes);
+        if (options.profileDetectors)
+            registry.startProfiling();
+        try {
+            analyzingClasses(classes);
+        } finally {
+            if (options.profileDetectors)
+                registry.finishProfiling();
+        }
+        if (cache != null) {
+            try {
+                cache.save();
+            } catch (IOException e) {
+                addError(new ErrorMessage(null, options.cacheFile, null, null, -1, e));
+            }
+        }
+    }
+
+    private String getFingerprint() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        options.report(new PrintStream(out, true));
+        // These options do not affect the analysis result
+        List<String> ignored = Arrays.asList("threads", "cacheFile", "snapshotDir", "maxWarningsInMemory",
+            "profileDetectors", "maxTypeCacheSize");
+        String optionsString = Stream.of(out.toString().split("\n")).filter(
+            line -> !ignored.contains(line.substring(0, line.indexOf(' ')))).collect(Collectors.joining("\n"));
+        // Version is not updated on every rebuild, thus the code of HuntBugs and Procyon is hashed instead
+        return WarningCache.getCodeHash(Context.class) + "\n" + WarningCache.getCodeHash(MetadataSystem.class) + "\n"
+            + optionsString + "\n" + registry.getSignature();
     }
 
     private boolean preparingClasses(Set<String> classes) {
-        MetadataSystem ms = new MetadataSystem(loader);
-        Set<String> auxClasses = new TreeSet<>();
-        int count = 0;
-        for (String className : classes) {
-            if (!fireEvent("Reading classes", className, count, classes.size()))
-                return false;
-            if(++count % 1000 == 0) {
-                ms = new MetadataSystem(loader);
-            }
-            TypeDefinition type;
-            try {
-                type = lookUp(ms, className);
-            } catch (Throwable t) {
-                addError(new ErrorMessage(null, className, null, null, -1, t));
-                continue;
-            }
+        Set<String> auxClasses = ConcurrentHashMap.newKeySet();
+        if (!forEachRepositoryClass("Reading classes", classes, (ms, className) -> {
+            TypeDefinition type = prepareClass(ms, className);
             if (type != null) {
                 for(ConstantPool.Entry entry : type.getConstantPool()) {
                     if(entry instanceof TypeInfoEntry) {
@@ -145,30 +194,91 @@ public class Context {
                             auxClasses.add(depName);
                     }
                 }
-                registry.populateDatabases(type);
             }
-        }
-        if (!fireEvent("Reading classes", null, classes.size(), classes.size()))
+        }))
             return false;
-        ms = new MetadataSystem(loader);
-        count = 0;
-        for (String className : auxClasses) {
-            if (!fireEvent("Reading dep classes", className, count, auxClasses.size()))
-                return false;
-            if(++count % 1000 == 0) {
-                ms = new MetadataSystem(loader);
+        snapshots = openSnapshots();
+        try {
+            return forEachClass("Reading dep classes", new TreeSet<>(auxClasses), this::prepareDepClass);
+        } finally {
+            for (DatabaseSnapshot snapshot : snapshots) {
+                try {
+                    snapshot.save();
+                } catch (IOException e) {
+                    addError(new ErrorMessage(null, null, null, null, -1, e));
+                }
+            }
+            snapshots = Collections.emptyList();
+        }
+    }
+
+    private List<DatabaseSnapshot> openSnapshots() {
+        String signature = registry.getSnapshotSignature();
+        if (options.snapshotDir.isEmpty() || signature == null)
+            return Collections.emptyList();
+        // Jars are listed in the type loader lookup order. Stop at the first non-jar entry, as it may shadow the
+        // classes of subsequent jars
+        List<Path> jars = new ArrayList<>();
+        boolean complete = true;
+        if (options.addBootClassPath) {
+            for (String entry : System.getProperty("sun.boot.class.path").split(File.pathSeparator)) {
+                Path path = Paths.get(entry);
+                if (Files.isRegularFile(path) && entry.endsWith(".jar"))
+                    jars.add(path);
+                else if (Files.exists(path)) {
+                    complete = false;
+                    break;
+                }
             }
-            TypeDefinition type;
+        }
+        if (complete)
+            jars.addAll(repository.getAuxJars());
+        List<DatabaseSnapshot> result = new ArrayList<>();
+        for (Path jar : jars) {
             try {
-                type = lookUp(ms, className);
-            } catch (Throwable t) {
-                addError(new ErrorMessage(null, className, null, null, -1, t));
-                continue;
+                result.add(DatabaseSnapshot.open(Paths.get(options.snapshotDir), jar, signature));
+            } catch (IOException e) {
+                addError(new ErrorMessage(null, jar.toString(), null, null, -1, e));
+                break;
             }
-            if (type != null)
-                registry.populateDatabases(type);
         }
-        return fireEvent("Reading dep classes", null, auxClasses.size(), auxClasses.size());
+        return result;
+    }
+
+    private void prepareDepClass(MetadataSystem ms, String className) {
+        for (DatabaseSnapshot snapshot : snapshots) {
+            if (snapshot.contains(className)) {
+                incStat("SnapshotClasses.Total");
+                byte[] record = snapshot.get(className);
+                if (record != null) {
+                    try {
+                        registry.populateDatabases(record);
+                        incStat("SnapshotClasses");
+                        return;
+                    } catch (IOException e) {
+                        addError(new ErrorMessage(null, className, null, null, -1, e));
+                    }
+                }
+                TypeDefinition type = prepareClass(ms, className);
+                if (type != null)
+                    snapshot.put(className, registry.snapshotType(type));
+                return;
+            }
+        }
+        prepareClass(ms, className);
+    }
+
+    private TypeDefinition prepareClass(MetadataSystem ms, String className) {
+        TypeDefinition type;
+        try {
+            type = lookUp(ms, className);
+        } catch (Throwable t) {
+            addError(new ErrorMessage(null, className, null, null, -1, t));
+            return null;
+        }
+        if (type != null)
+            registry.populateDatabases(type);
+        return type;
     }
 
     private TypeDefinition lookUp(MetadataSystem ms, String className) {
@@ -181,17 +291,111 @@ public class Context {
     }
 
     private void analyzingClasses(Set<String> classes) {
-        MetadataSystem ms = new MetadataSystem(loader);
         classesCount.set(0);
-        for (String className : classes) {
-            if(classesCount.get() % 1000 == 0)
-                ms = new MetadataSystem(loader);
-            if (!fireEvent("Analyzing classes", className, classesCount.get(), classes.size()))
-                return;
-            analyzeClass(ms, className);
+        // Hierarchy is complete at this point, so it can answer the subtype queries
+        SubtypeCache subtypes = new SubtypeCache(registry.getDatabase(Hierarchy.class));
+        forEachRepositoryClass("Analyzing classes", classes, (ms, className) -> subtypes.run(() -> analyzeClass(ms,
+            className)));
+    }
+
+    private boolean forEachRepositoryClass(String stepName, Collection<String> classes,
+            BiConsumer<MetadataSystem, String> action) {
+        // Repository classes are loaded in the iteration order, so they can be read in advance
+        repository.prefetch(new ArrayList<>(classes));
+        try {
+            return forEachClass(stepName, classes, action);
+        } finally {
+            repository.prefetch(Collections.emptyList());
+        }
+    }
+
+    /**
+     * Performs given action for every class. If {@link AnalysisOptions#threads} is bigger than 1, then classes are
+     * processed by the pool of workers. Every worker has its own type loader and {@link MetadataSystem} which keeps
+     * the recently used types up to {@link AnalysisOptions#maxTypeCacheSize}, while the boot class path types are
+     * shared. Warnings and errors are collected per class and committed in the original class order, so the result is
+     * the same as in single-threaded mode. At most {@value #CLASSES_IN_FLIGHT_PER_THREAD} classes per thread are
+     * submitted ahead of the one being committed.
+     * 
+     * @return false if cancel was requested
+     */
+    private boolean forEachClass(String stepName, Collection<String> classes, BiConsumer<MetadataSystem, String> action) {
+        int count = 0;
+        if (options.threads <= 1) {
+            CachingMetadataSystem ms = createMetadataSystem();
+            for (String className : classes) {
+                if (!fireEvent(stepName, className, count++, classes.size()))
+                    return false;
+                action.accept(ms, className);
+                ms.trim();
+            }
+            return fireEvent(stepName, null, classes.size(), classes.size());
+        }
+        ForkJoinPool pool = new ForkJoinPool(options.threads);
+        ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+        try {
+            // Only a limited number of classes is submitted ahead of the committed one, so the pending results do
+            // not pile up if some class takes long
+            Deque<ForkJoinTask<ClassResult>> tasks = new ArrayDeque<>();
+            Iterator<String> it = classes.iterator();
+            int window = options.threads * CLASSES_IN_FLIGHT_PER_THREAD;
+            while (tasks.size() < window && it.hasNext()) {
+                tasks.add(submit(pool, workers, it.next(), action));
+            }
+            while (!tasks.isEmpty()) {
+                ClassResult result = tasks.poll().join();
+                if (it.hasNext())
+                    tasks.add(submit(pool, workers, it.next(), action));
+                if (!fireEvent(stepName, result.className, count++, classes.size()))
+                    return false;
+                result.warnings.forEach(warnings::add);
+                errors.addAll(result.errors);
+            }
+            return fireEvent(stepName, null, classes.size(), classes.size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static ForkJoinTask<ClassResult> submit(ForkJoinPool pool, ThreadLocal<Worker> workers, String className,
+            BiConsumer<MetadataSystem, String> action) {
+        return pool.submit(() -> workers.get().process(className, action));
+    }
+
+    private CachingMetadataSystem createMetadataSystem() {
+        ITypeLoader loader = repository.createTypeLoader();
+        if (cache != null)
+            loader = cache.createHashingLoader(loader);
+        // Boot class path precedes the repository in the lookup order, so its class files can be shared
+        if (options.addBootClassPath)
+            loader = SharedTypeLoader.withBootClassPath(loader);
+        return new CachingMetadataSystem(loader, options.maxTypeCacheSize);
+    }
+
+    private class Worker {
+        private final CachingMetadataSystem ms = createMetadataSystem();
+
+        ClassResult process(String className, BiConsumer<MetadataSystem, String> action) {
+            ClassResult result = new ClassResult(className);
+            currentClass.set(result);
+            try {
+                action.accept(ms, className);
+            } finally {
+                currentClass.remove();
+                ms.trim();
+            }
+            return result;
+        }
+    }
+
+    private static class ClassResult {
+        final String className;
+        final List<Warning> warnings = new ArrayList<>();
+        final List<ErrorMessage> errors = new ArrayList<>();
+
+        ClassResult(String className) {
+            this.className = className;
         }
-        if (!fireEvent("Analyzing classes", null, classes.size(), classes.size()))
-            return;
     }
 
     void analyzeClass(MetadataSystem ms, String name) {
@@ -203,24 +407,74 @@ public class Context {
             addError(new ErrorMessage(null, name, null, null, -1, t));
             return;
         }
-        if (type != null)
+        if (type == null)
+            return;
+        if (cache == null) {
+            registry.analyzeClass(type);
+            return;
+        }
+        incStat("CachedClasses.Total");
+        String key = cache.getKey(type);
+        if (key != null) {
+            List<Warning> cached = cache.get(name, key);
+            if (cached != null) {
+                incStat("CachedClasses");
+                cached.forEach(this::addWarning);
+                return;
+            }
+        }
+        ClassResult outer = currentClass.get();
+        ClassResult result = new ClassResult(name);
+        currentClass.set(result);
+        try {
             registry.analyzeClass(type);
+        } finally {
+            currentClass.set(outer);
+        }
+        if (key != null && result.errors.isEmpty())
+            cache.put(name, key, result.warnings);
+        if (outer != null) {
+            outer.warnings.addAll(result.warnings);
+            outer.errors.addAll(result.errors);
+        } else {
+            result.warnings.forEach(warnings::add);
+            errors.addAll(result.errors);
+        }
     }
 
     public void addError(ErrorMessage msg) {
         incStat("InternalErrors");
-        errors.add(msg);
+        ClassResult result = currentClass.get();
+        if (result != null)
+            result.errors.add(msg);
+        else
+            errors.add(msg);
     }
 
     public void addWarning(Warning warning) {
         if(warning.getScore() < getOptions().minScore)
             return;
         incStat("Warnings");
-        warnings.add(warning);
+        ClassResult result = currentClass.get();
+        if (result != null)
+            result.warnings.add(warning);
+        else
+            warnings.add(warning);
     }
     
+    /**
+     * @return stream of reported warnings sorted in the report order
+     */
     public Stream<Warning> warnings() {
-        return warnings.stream();
+        return warnings.warnings();
+    }
+
+    /**
+     * Releases the storage of the reported warnings (e.g. deletes the temporary files). Must be called after all the
+     * reports are written.
+     */
+    public void close() {
+        warnings.close();
     }
 
     public Stream<ErrorMessage> errors() {
@@ -228,10 +482,9 @@ public class Context {
     }
 
     public void reportWarnings(PrintStream app) {
-        List<Warning> warns = new ArrayList<>(warnings);
-        warns.sort(Comparator.comparingInt(Warning::getScore).reversed().thenComparing(w -> w.getType().getName())
-            .thenComparing(Warning::getClassName));
-        warns.forEach(w -> app.append(w.toString()).append("\n"));
+        try (Stream<Warning> warns = warnings.warnings()) {
+            warns.forEach(w -> app.append(w.toString()).append("\n"));
+        }
     }
 
     public void reportStats(PrintStream app) {
@@ -250,6 +503,18 @@ public class Context {
             } else 
                 app.printf(Locale.ENGLISH, "\t%s: %d%n", key, value);
         });
+        List<DetectorProfile> profiles = getDetectorProfiles();
+        if (!profiles.isEmpty()) {
+            app.append("Detectors profile:\n");
+            profiles.forEach(p -> app.append("\t").append(p.toString()).append("\n"));
+        }
+    }
+
+    /**
+     * @return detector profiles sorted by the time spent (empty unless {@link AnalysisOptions#profileDetectors} is set)
+     */
+    public List<DetectorProfile> getDetectorProfiles() {
+        return registry.getProfiles();
     }
 
     public void reportErrors(PrintStream app) {
@@ -0,0 +1,350 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.analysis;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarFile;
+
+/**
+ * Snapshot of type databases content for the classes of single dependency jar. The snapshot file name contains the
+ * checksum of the jar and the hash of the format version and the database signature, so it's never used after the jar
+ * or the databases are changed. The jar checksum is cached in the separate file and recomputed only when the size or
+ * the modification time of the jar changes. The file is memory-mapped and the records are decoded only when requested.
+ * <p>
+ * The mapped file cannot be replaced on some platforms, thus {@link #save()} writes the next generation of the file
+ * and the older generations are deleted when possible. Invalid files are deleted and created from scratch.
+ * <p>
+ * File format: magic, signature hash, number of top-level classes in the jar, then the index of (name offset, record
+ * offset) pairs sorted by class name, then the names and the records. Record offset is -1 if the class was not
+ * requested yet. Such records are created during the analysis and written by {@link #save()}.
+ * 
+ * @author lan
+ *
+ */
+public class DatabaseSnapshot {
+    private static final int MAGIC = 0x48424453; // HBDS
+    private static final int NO_RECORD = -1;
+    // Increment when the file layout changes
+    private static final int FORMAT_VERSION = 2;
+    private static final String SUFFIX = ".snapshot";
+    private static final String CHECKSUM_SUFFIX = ".checksum";
+
+    private final Path path;
+    private final String prefix;
+    private final int generation;
+    private final String signature;
+    private final ByteBuffer buffer;
+    private final int count, indexStart, namesStart, recordsStart;
+    private final Map<String, byte[]> newRecords = new ConcurrentHashMap<>();
+
+    private DatabaseSnapshot(Path path, String prefix, int generation, String signature, ByteBuffer buffer)
+            throws IOException {
+        this.path = path;
+        this.prefix = prefix;
+        this.generation = generation;
+        this.signature = signature;
+        this.buffer = buffer;
+        if (buffer.limit() < 5 || buffer.getInt(0) != MAGIC)
+            throw new IOException(path + ": invalid snapshot file");
+        byte[] hash = new byte[buffer.get(4)];
+        ByteBuffer dup = buffer.duplicate();
+        dup.position(5);
+        dup.get(hash);
+        if (!new String(hash, StandardCharsets.UTF_8).equals(signature))
+            throw new IOException(path + ": signature mismatch");
+        this.count = dup.getInt();
+        this.indexStart = dup.position();
+        this.namesStart = indexStart + count * 8;
+        this.recordsStart = namesStart + dup.getInt(namesStart) + 4;
+    }
+
+    /**
+     * Opens the snapshot for given jar creating it if necessary.
+     * 
+     * @param dir directory where snapshots are stored
+     * @param jar dependency jar
+     * @param signature string which identifies the records format (see
+     *        {@link one.util.huntbugs.registry.DetectorRegistry#getSnapshotSignature()})
+     * @return the snapshot
+     * @throws IOException if the jar cannot be read or the snapshot cannot be created
+     */
+    public static DatabaseSnapshot open(Path dir, Path jar, String signature) throws IOException {
+        String signatureHash = WarningCache.toHex(WarningCache.createDigest().digest((FORMAT_VERSION + "\n" + signature)
+                .getBytes(StandardCharsets.UTF_8)));
+        Files.createDirectories(dir);
+        String prefix = jar.getFileName() + "-" + checksum(dir, jar) + "-" + signatureHash.substring(0, 16) + ".";
+        List<Integer> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, prefix + "*" + SUFFIX)) {
+            for (Path file : files) {
+                Integer generation = getGeneration(file.getFileName().toString(), prefix);
+                if (generation != null)
+                    generations.add(generation);
+            }
+        }
+        generations.sort(Comparator.reverseOrder());
+        for (int generation : generations) {
+            Path path = dir.resolve(prefix + generation + SUFFIX);
+            try {
+                DatabaseSnapshot snapshot = map(path, prefix, generation, signatureHash);
+                snapshot.deleteOlderGenerations(generations);
+                return snapshot;
+            } catch (IOException | RuntimeException e) {
+                // Corrupted file: try the older one
+                deleteQuietly(path);
+            }
+        }
+        TreeSet<String> names = new TreeSet<>();
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            jarFile.stream().map(e -> e.getName()).filter(name -> name.endsWith(".class")).map(
+                name -> name.substring(0, name.length() - ".class".length())).filter(
+                name -> name.indexOf('$', name.lastIndexOf('/')) < 0).forEach(names::add);
+        }
+        TreeMap<String, byte[]> records = new TreeMap<>();
+        names.forEach(name -> records.put(name, null));
+        Path path = dir.resolve(prefix + 0 + SUFFIX);
+        writeFile(path, signatureHash, records);
+        return map(path, prefix, 0, signatureHash);
+    }
+
+    private static Integer getGeneration(String fileName, String prefix) {
+        if (!fileName.startsWith(prefix) || !fileName.endsWith(SUFFIX))
+            return null;
+        try {
+            return Integer.valueOf(fileName.substring(prefix.length(), fileName.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static DatabaseSnapshot map(Path path, String prefix, int generation, String signatureHash)
+            throws IOException {
+        try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+            return new DatabaseSnapshot(path, prefix, generation, signatureHash, buffer);
+        }
+    }
+
+    private void deleteOlderGenerations(Collection<Integer> generations) {
+        for (int older : generations) {
+            if (older < generation)
+                deleteQuietly(path.resolveSibling(prefix + older + SUFFIX));
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Still mapped by another process (or on Windows): will be deleted next time
+        }
+    }
+
+    /**
+     * @param className internal name of top-level class
+     * @return true if the class is located in the jar
+     */
+    public boolean contains(String className) {
+        return find(className) >= 0;
+    }
+
+    /**
+     * @param className internal name of top-level class
+     * @return the record previously stored for this class or null if there's no record
+     */
+    public byte[] get(String className) {
+        byte[] record = newRecords.get(className);
+        if (record != null)
+            return record;
+        int idx = find(className);
+        return idx < 0 ? null : getRecord(idx);
+    }
+
+    private byte[] getRecord(int idx) {
+        int offset = buffer.getInt(indexStart + idx * 8 + 4);
+        if (offset == NO_RECORD)
+            return null;
+        ByteBuffer dup = buffer.duplicate();
+        dup.position(recordsStart + offset);
+        byte[] record = new byte[dup.getInt()];
+        dup.get(record);
+        return record;
+    }
+
+    /**
+     * Stores new record for given class. It will be written to the disk by {@link #save()}.
+     * 
+     * @param className internal name of top-level class which is located in the jar
+     * @param record record to store
+     */
+    public void put(String className, byte[] record) {
+        newRecords.put(className, record);
+    }
+
+    /**
+     * Writes the snapshot to the disk if new records were added.
+     * 
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void save() throws IOException {
+        if (newRecords.isEmpty())
+            return;
+        TreeMap<String, byte[]> records = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            String name = getName(i);
+            byte[] record = newRecords.get(name);
+            records.put(name, record == null ? getRecord(i) : record);
+        }
+        // This file is still mapped, so the next generation is written instead of replacing it
+        Path next = path.resolveSibling(prefix + (generation + 1) + SUFFIX);
+        writeFile(next, signature, records);
+        deleteQuietly(path);
+    }
+
+    private int find(String className) {
+        int low = 0, high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = getName(mid).compareTo(className);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    private String getName(int idx) {
+        ByteBuffer dup = buffer.duplicate();
+        dup.position(namesStart + 4 + buffer.getInt(indexStart + idx * 8));
+        byte[] name = new byte[dup.getShort() & 0xFFFF];
+        dup.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param records records by class name sorted by name, null value if there's no record for the class
+     */
+    private static void writeFile(Path path, String signatureHash, TreeMap<String, byte[]> records)
+            throws IOException {
+        // Readers never see incomplete file
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        write(tmp, signatureHash, records);
+        try {
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Written concurrently by another process
+            deleteQuietly(tmp);
+        }
+    }
+
+    private static void write(Path path, String signatureHash, TreeMap<String, byte[]> records)
+            throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            byte[] hash = signatureHash.getBytes(StandardCharsets.UTF_8);
+            out.writeByte(hash.length);
+            out.write(hash);
+            out.writeInt(records.size());
+            int nameOffset = 0, recordOffset = 0;
+            for (Map.Entry<String, byte[]> e : records.entrySet()) {
+                String name = e.getKey();
+                byte[] record = e.getValue();
+                out.writeInt(nameOffset);
+                out.writeInt(record == null ? NO_RECORD : recordOffset);
+                nameOffset += 2 + name.getBytes(StandardCharsets.UTF_8).length;
+                if (record != null)
+                    recordOffset += 4 + record.length;
+            }
+            out.writeInt(nameOffset);
+            for (String name : records.keySet()) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+            for (byte[] record : records.values()) {
+                if (record != null) {
+                    out.writeInt(record.length);
+                    out.write(record);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computing the checksum of the big jar like rt.jar is expensive, so the checksum is stored in the small file
+     * together with the size and the modification time of the jar. The stored checksum is reused while they match.
+     */
+    private static String checksum(Path dir, Path jar) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(jar, BasicFileAttributes.class);
+        String stamp = attrs.size() + " " + attrs.lastModifiedTime().toMillis() + " ";
+        String pathHash = WarningCache.toHex(WarningCache.createDigest().digest(jar.toAbsolutePath().toString()
+                .getBytes(StandardCharsets.UTF_8)));
+        Path checksumFile = dir.resolve(jar.getFileName() + "-" + pathHash.substring(0, 16) + CHECKSUM_SUFFIX);
+        try {
+            String line = new String(Files.readAllBytes(checksumFile), StandardCharsets.UTF_8);
+            if (line.startsWith(stamp) && line.length() > stamp.length())
+                return line.substring(stamp.length());
+        } catch (IOException e) {
+            // Not computed yet or unreadable: compute from scratch
+        }
+        String checksum = computeChecksum(jar);
+        Path tmp = checksumFile.resolveSibling(checksumFile.getFileName() + ".tmp");
+        try {
+            Files.write(tmp, (stamp + checksum).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, checksumFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Will be recomputed next time
+            deleteQuietly(tmp);
+        }
+        return checksum;
+    }
+
+    private static String computeChecksum(Path jar) throws IOException {
+        MessageDigest md = WarningCache.createDigest();
+        byte[] buf = new byte[65536];
+        try (InputStream is = Files.newInputStream(jar)) {
+            int read;
+            while ((read = is.read(buf)) > 0)
+                md.update(buf, 0, read);
+        }
+        return WarningCache.toHex(md.digest());
+    }
+}
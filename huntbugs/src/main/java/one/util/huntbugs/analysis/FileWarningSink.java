@@ -0,0 +1,382 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.analysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import one.util.huntbugs.analysis.WarningIO.UnsupportedValueException;
+import one.util.huntbugs.warning.Warning;
+import one.util.huntbugs.warning.WarningType;
+
+/**
+ * {@link WarningSink} which keeps at most given number of warnings in memory. When the limit is reached, the warnings
+ * are sorted and spilled to the temporary file. The stored warnings are read back by merging the spilled files, so only
+ * one warning per file is kept in memory while the reports are written. At most {@value #MAX_FAN_IN} files are merged at
+ * once: when there are more, they are merged into bigger files first. A merged file is deleted only after the streams
+ * returned by {@link #warnings()} stop reading it, so these streams are not affected. The temporary files are deleted
+ * when the sink is closed.
+ * 
+ * <p>
+ * Warnings with annotation values which cannot be serialized (see {@link WarningIO}) are always kept in memory. All the
+ * built-in detectors report only serializable values, so this can happen only for warnings of third-party detectors.
+ * 
+ * @author lan
+ *
+ */
+public class FileWarningSink implements WarningSink {
+    /**
+     * Maximal number of files which are read at once
+     */
+    public static final int MAX_FAN_IN = 64;
+
+    private final int limit;
+    private final Path dir;
+    private final Function<String, WarningType> types;
+    private final List<Entry> buffer = new ArrayList<>();
+    // Warnings which cannot be serialized; not bounded by the limit
+    private final List<Entry> retained = new ArrayList<>();
+    // Spilled runs, levels do not increase along the list
+    private final List<Run> runs = new ArrayList<>();
+    private final List<MergeIterator> open = new ArrayList<>();
+    private long seq;
+
+    private static final Comparator<Entry> ENTRY_ORDER = Comparator.<Entry, Warning> comparing(e -> e.warning,
+        REPORT_ORDER).thenComparingLong(e -> e.seq);
+
+    private static class Entry {
+        final long seq;
+        final Warning warning;
+
+        Entry(long seq, Warning warning) {
+            this.seq = seq;
+            this.warning = warning;
+        }
+    }
+
+    private static class Run {
+        final Path path;
+        final int count;
+        // number of merges this run went through
+        final int level;
+        // number of open iterators reading this run, guarded by the sink
+        int readers;
+        // whether the run was merged into another one, so it should be deleted when it's no longer read
+        boolean merged;
+
+        Run(Path path, int count, int level) {
+            this.path = path;
+            this.count = count;
+            this.level = level;
+        }
+    }
+
+    /**
+     * @param limit maximal number of warnings to keep in memory
+     * @param dir directory for temporary files or null to use the default one
+     * @param types function to find warning type by name
+     */
+    public FileWarningSink(int limit, Path dir, Function<String, WarningType> types) {
+        if (limit <= 0)
+            throw new IllegalArgumentException("limit must be positive: " + limit);
+        this.limit = limit;
+        this.dir = dir;
+        this.types = types;
+    }
+
+    @Override
+    public synchronized void add(Warning warning) {
+        buffer.add(new Entry(seq++, warning));
+        if (buffer.size() >= limit) {
+            try {
+                spill();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void spill() throws IOException {
+        buffer.sort(ENTRY_ORDER);
+        List<Entry> unsupported = new ArrayList<>();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream bytesOut = new DataOutputStream(bytes);
+        // Every warning is serialized once: the bytes are written only if the whole warning is serializable
+        runs.add(write(out -> {
+            int count = 0;
+            for (Entry entry : buffer) {
+                bytes.reset();
+                try {
+                    WarningIO.writeWarning(bytesOut, entry.warning);
+                } catch (UnsupportedValueException e) {
+                    unsupported.add(entry);
+                    continue;
+                }
+                out.writeLong(entry.seq);
+                bytes.writeTo(out);
+                count++;
+            }
+            return count;
+        }, 0));
+        retained.addAll(unsupported);
+        buffer.clear();
+        // Merge the runs of the same level, so every warning is rewritten a logarithmic number of times
+        while (runs.size() >= MAX_FAN_IN) {
+            int level = runs.get(runs.size() - 1).level;
+            if (runs.get(runs.size() - MAX_FAN_IN).level != level)
+                break;
+            mergeTail(MAX_FAN_IN, level + 1);
+        }
+    }
+
+    private interface RunWriter {
+        /**
+         * @return number of written warnings
+         */
+        int write(DataOutputStream out) throws IOException;
+    }
+
+    private Run write(Iterator<Entry> entries, int level) throws IOException {
+        return write(out -> {
+            int count = 0;
+            while (entries.hasNext()) {
+                Entry entry = entries.next();
+                out.writeLong(entry.seq);
+                try {
+                    WarningIO.writeWarning(out, entry.warning);
+                } catch (UnsupportedValueException e) {
+                    // Only serializable warnings are spilled
+                    throw new InternalError(e);
+                }
+                count++;
+            }
+            return count;
+        }, level);
+    }
+
+    private Run write(RunWriter writer, int level) throws IOException {
+        Path path = dir == null ? Files.createTempFile("huntbugs", ".warnings") : Files.createTempFile(dir,
+            "huntbugs", ".warnings");
+        int count;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            count = writer.write(out);
+        } catch (IOException | RuntimeException | Error e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        return new Run(path, count, level);
+    }
+
+    /**
+     * Replaces the last n runs with the single run of the given level
+     */
+    private void mergeTail(int n, int level) throws IOException {
+        List<Run> tail = runs.subList(runs.size() - n, runs.size());
+        Run merged;
+        try (MergeIterator it = open(tail, Collections.emptyList())) {
+            merged = write(it, level);
+        }
+        for (Run run : tail) {
+            run.merged = true;
+            if (run.readers == 0)
+                delete(run);
+        }
+        tail.clear();
+        runs.add(merged);
+    }
+
+    private static void delete(Run run) {
+        try {
+            Files.deleteIfExists(run.path);
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private MergeIterator open(List<Run> toOpen, List<Entry> memory) throws IOException {
+        List<Iterator<Entry>> sources = new ArrayList<>();
+        try {
+            for (Run run : toOpen) {
+                sources.add(new RunIterator(run));
+            }
+        } catch (IOException e) {
+            sources.forEach(it -> ((RunIterator) it).close());
+            throw e;
+        }
+        sources.add(memory.iterator());
+        return new MergeIterator(sources);
+    }
+
+    @Override
+    public synchronized Stream<Warning> warnings() {
+        List<Entry> memory = new ArrayList<>(buffer);
+        memory.addAll(retained);
+        memory.sort(ENTRY_ORDER);
+        MergeIterator merged;
+        try {
+            // One more source is used for the warnings in memory
+            while (runs.size() >= MAX_FAN_IN) {
+                int n = Math.min(MAX_FAN_IN, runs.size() - MAX_FAN_IN + 2);
+                mergeTail(n, runs.get(runs.size() - n).level);
+            }
+            merged = open(runs, memory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        open.add(merged);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED), false).map(
+            e -> e.warning).onClose(() -> {
+            synchronized (this) {
+                open.remove(merged);
+            }
+            merged.close();
+        });
+    }
+
+    /**
+     * Closes the streams returned by {@link #warnings()} which are still open and deletes the temporary files. The
+     * sink must not be used after closing.
+     */
+    @Override
+    public synchronized void close() {
+        // Merged runs are deleted as soon as their last reader is closed
+        new ArrayList<>(open).forEach(MergeIterator::close);
+        open.clear();
+        runs.forEach(FileWarningSink::delete);
+        runs.clear();
+        retained.clear();
+        buffer.clear();
+    }
+
+    private class RunIterator implements Iterator<Entry> {
+        private final Run run;
+        private final DataInputStream in;
+        private int remaining;
+        private boolean closed;
+
+        RunIterator(Run run) throws IOException {
+            this.run = run;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.path)));
+            this.remaining = run.count;
+            synchronized (FileWarningSink.this) {
+                run.readers++;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public Entry next() {
+            if (remaining <= 0)
+                throw new NoSuchElementException();
+            try {
+                Entry entry = new Entry(in.readLong(), WarningIO.readWarning(in, types));
+                if (--remaining == 0)
+                    close();
+                return entry;
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void close() {
+            remaining = 0;
+            if (closed)
+                return;
+            closed = true;
+            try {
+                in.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            synchronized (FileWarningSink.this) {
+                if (--run.readers == 0 && run.merged)
+                    delete(run);
+            }
+        }
+    }
+
+    private static class MergeIterator implements Iterator<Entry>, AutoCloseable {
+        private final List<Iterator<Entry>> sources;
+        private final PriorityQueue<Head> heads = new PriorityQueue<>(Comparator.comparing(h -> h.entry, ENTRY_ORDER));
+
+        private static class Head {
+            final Entry entry;
+            final Iterator<Entry> source;
+
+            Head(Entry entry, Iterator<Entry> source) {
+                this.entry = entry;
+                this.source = source;
+            }
+        }
+
+        MergeIterator(List<Iterator<Entry>> sources) {
+            this.sources = sources;
+            sources.forEach(this::advance);
+        }
+
+        private void advance(Iterator<Entry> source) {
+            if (source.hasNext())
+                heads.add(new Head(source.next(), source));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public Entry next() {
+            Head head = heads.poll();
+            if (head == null)
+                throw new NoSuchElementException();
+            advance(head.source);
+            return head.entry;
+        }
+
+        @Override
+        public void close() {
+            heads.clear();
+            for (Iterator<Entry> source : sources) {
+                if (source instanceof FileWarningSink.RunIterator)
+                    ((FileWarningSink.RunIterator) source).close();
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import one.util.huntbugs.warning.Warning;
+
+/**
+ * Default {@link WarningSink} which keeps all the warnings in memory.
+ * 
+ * @author lan
+ *
+ */
+public class MemoryWarningSink implements WarningSink {
+    private final List<Warning> warnings = new ArrayList<>();
+
+    @Override
+    public synchronized void add(Warning warning) {
+        warnings.add(warning);
+    }
+
+    @Override
+    public synchronized Stream<Warning> warnings() {
+        return new ArrayList<>(warnings).stream().sorted(REPORT_ORDER);
+    }
+}
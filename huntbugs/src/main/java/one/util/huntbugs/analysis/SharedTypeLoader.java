@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.analysis;
+
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.strobel.assembler.metadata.Buffer;
+import com.strobel.assembler.metadata.ClasspathTypeLoader;
+import com.strobel.assembler.metadata.CompositeTypeLoader;
+import com.strobel.assembler.metadata.ITypeLoader;
+
+/**
+ * Thread-safe {@link ITypeLoader} for the classes which never change during the JVM lifetime (like boot class path
+ * classes). Class files are read once and shared by all the analysis workers. Only the bytes are shared: the
+ * {@code TypeDefinition} is not thread-safe as Procyon loads its members lazily, so every worker reads the type into
+ * its own metadata system.
+ * 
+ * @author lan
+ *
+ */
+class SharedTypeLoader implements ITypeLoader {
+    private static final byte[] MISSING = new byte[0];
+    private static SoftReference<SharedTypeLoader> bootClassPath = new SoftReference<>(null);
+
+    private final ITypeLoader loader;
+    private final Map<String, byte[]> classes = new ConcurrentHashMap<>();
+
+    SharedTypeLoader(ITypeLoader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * @return shared loader for the boot class path classes. The same instance is returned unless it was reclaimed
+     *         due to the memory pressure.
+     */
+    static synchronized SharedTypeLoader forBootClassPath() {
+        SharedTypeLoader loader = bootClassPath.get();
+        if (loader == null) {
+            loader = new SharedTypeLoader(new ClasspathTypeLoader(System.getProperty("sun.boot.class.path")));
+            bootClassPath = new SoftReference<>(loader);
+        }
+        return loader;
+    }
+
+    /**
+     * @param loader type loader
+     * @return new type loader which looks up the boot class path classes first. It must be used by one thread only
+     *         unless the supplied loader is thread-safe.
+     */
+    static ITypeLoader withBootClassPath(ITypeLoader loader) {
+        return new CompositeTypeLoader(forBootClassPath(), loader);
+    }
+
+    @Override
+    public boolean tryLoadType(String internalName, Buffer buffer) {
+        byte[] data = classes.get(internalName);
+        if (data == null)
+            data = load(internalName);
+        if (data == MISSING)
+            return false;
+        buffer.reset(data.length);
+        System.arraycopy(data, 0, buffer.array(), 0, data.length);
+        buffer.position(0);
+        return true;
+    }
+
+    // The underlying loader is not thread-safe
+    private synchronized byte[] load(String internalName) {
+        byte[] data = classes.get(internalName);
+        if (data != null)
+            return data;
+        Buffer buffer = new Buffer(0);
+        data = loader.tryLoadType(internalName, buffer) ? Arrays.copyOf(buffer.array(), buffer.size()) : MISSING;
+        classes.put(internalName, data);
+        return data;
+    }
+}
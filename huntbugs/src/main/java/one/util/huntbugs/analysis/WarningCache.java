@@ -0,0 +1,385 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.analysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import com.strobel.assembler.metadata.Buffer;
+import com.strobel.assembler.metadata.ITypeLoader;
+import com.strobel.assembler.metadata.TypeDefinition;
+import com.strobel.assembler.metadata.TypeReference;
+
+import one.util.huntbugs.analysis.WarningIO.UnsupportedValueException;
+import one.util.huntbugs.db.Hierarchy;
+import one.util.huntbugs.db.Hierarchy.TypeHierarchy;
+import one.util.huntbugs.warning.Warning;
+import one.util.huntbugs.warning.WarningType;
+
+/**
+ * Persistent cache of warnings found in the top-level classes. Cache entry is valid while the bytes of the class, its
+ * nested classes and its supertypes, the set of its direct subclasses, the analysis settings and the analyzer code
+ * remain the same.
+ * <p>
+ * Other classes are not tracked: if the analysis of the class depends on the classes it only refers to (for example,
+ * the annotations of the called methods or the retention of the used annotation types), the warnings may become stale
+ * after these classes are changed. Delete the cache file when the dependencies are updated.
+ *
+ * @author lan
+ *
+ */
+public class WarningCache {
+    private static final int MAGIC = 0x48424331; // HBC1
+
+    private final Path path;
+    private final String fingerprint;
+    private final Function<String, WarningType> types;
+    private final Hierarchy hierarchy;
+    private final ThreadLocal<ITypeLoader> loader;
+    private final Map<String, Entry> oldEntries;
+    private final Map<String, Entry> newEntries = new ConcurrentHashMap<>();
+    private final Map<String, String> typeHashes = new ConcurrentHashMap<>();
+
+    private static class Entry {
+        final String key;
+        final byte[] data;
+
+        Entry(String key, byte[] data) {
+            this.key = key;
+            this.data = data;
+        }
+    }
+
+    /**
+     * @param path cache file location (may not exist)
+     * @param fingerprint string which describes the analysis settings: the cache is discarded if it changes
+     * @param types function to find warning type by name
+     * @param hierarchy populated hierarchy database or null if it's not available
+     * @param loaderSupplier supplier of type loaders used to read the class files (called once per thread)
+     */
+    public WarningCache(Path path, String fingerprint, Function<String, WarningType> types, Hierarchy hierarchy,
+            Supplier<ITypeLoader> loaderSupplier) {
+        this.path = path;
+        this.fingerprint = toHex(createDigest().digest(fingerprint.getBytes(StandardCharsets.UTF_8)));
+        this.types = types;
+        this.hierarchy = hierarchy;
+        this.loader = ThreadLocal.withInitial(loaderSupplier);
+        this.oldEntries = read();
+    }
+
+    private Map<String, Entry> read() {
+        Map<String, Entry> entries = new HashMap<>();
+        if (!Files.isRegularFile(path))
+            return entries;
+        try (DataInputStream dis = new DataInputStream(new GZIPInputStream(new BufferedInputStream(Files
+                .newInputStream(path))))) {
+            if (dis.readInt() != MAGIC || !dis.readUTF().equals(fingerprint))
+                return entries;
+            int count = dis.readInt();
+            for (int i = 0; i < count; i++) {
+                String className = dis.readUTF();
+                String key = dis.readUTF();
+                byte[] data = new byte[dis.readInt()];
+                dis.readFully(data);
+                entries.put(className, new Entry(key, data));
+            }
+        } catch (IOException e) {
+            // Corrupted cache: start from scratch
+            entries.clear();
+        }
+        return entries;
+    }
+
+    /**
+     * Writes the cache to the disk. Only the classes requested during this analysis are stored. The file is replaced
+     * atomically, so the previous cache remains intact if writing fails.
+     * 
+     * @throws IOException if the cache cannot be written
+     */
+    public void save() throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        if (dir != null)
+            Files.createDirectories(dir);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            write(tmp);
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private void write(Path file) throws IOException {
+        try (DataOutputStream dos = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(Files
+                .newOutputStream(file))))) {
+            dos.writeInt(MAGIC);
+            dos.writeUTF(fingerprint);
+            dos.writeInt(newEntries.size());
+            for (Map.Entry<String, Entry> e : new TreeMap<>(newEntries).entrySet()) {
+                dos.writeUTF(e.getKey());
+                dos.writeUTF(e.getValue().key);
+                dos.writeInt(e.getValue().data.length);
+                dos.write(e.getValue().data);
+            }
+        }
+    }
+
+    /**
+     * @param type top-level type to create the key for
+     * @return the key which describes the current state of the type or null if it cannot be created
+     */
+    public String getKey(TypeDefinition type) {
+        MessageDigest digest = createDigest();
+        if (!updateType(digest, type))
+            return null;
+        Set<String> superTypes = new TreeSet<>();
+        collectSuperTypes(type, superTypes);
+        for (String superType : superTypes) {
+            digest.update(superType.getBytes(StandardCharsets.UTF_8));
+            digest.update(getTypeHash(superType).getBytes(StandardCharsets.UTF_8));
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @param className top-level class name
+     * @param key key created by {@link #getKey(TypeDefinition)}
+     * @return list of cached warnings or null if cache has no valid entry for given class
+     */
+    public List<Warning> get(String className, String key) {
+        Entry entry = oldEntries.get(className);
+        if (entry == null || !entry.key.equals(key))
+            return null;
+        List<Warning> warnings;
+        try {
+            warnings = readWarnings(entry.data);
+        } catch (IOException e) {
+            return null;
+        }
+        if (warnings != null)
+            newEntries.put(className, entry);
+        return warnings;
+    }
+
+    /**
+     * Stores the warnings found in given class
+     *
+     * @param className top-level class name
+     * @param key key created by {@link #getKey(TypeDefinition)}
+     * @param warnings all the warnings reported for the class and its nested classes
+     */
+    public void put(String className, String key, List<Warning> warnings) {
+        try {
+            newEntries.put(className, new Entry(key, writeWarnings(warnings)));
+        } catch (UnsupportedValueException e) {
+            // Cannot cache: will be analyzed next time
+        }
+    }
+
+    private boolean updateType(MessageDigest digest, TypeDefinition type) {
+        String hash = getTypeHash(type.getInternalName());
+        if (hash.isEmpty())
+            return false;
+        digest.update(hash.getBytes(StandardCharsets.UTF_8));
+        if (hierarchy != null) {
+            TypeHierarchy th = hierarchy.get(type);
+            if (th != null) {
+                Set<String> subClasses = new TreeSet<>();
+                th.getSubClasses().forEach(sub -> subClasses.add(sub.getInternalName()));
+                subClasses.forEach(sub -> digest.update(sub.getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+        for (TypeDefinition subType : type.getDeclaredTypes()) {
+            if (!updateType(digest, subType))
+                return false;
+        }
+        return true;
+    }
+
+    private void collectSuperTypes(TypeDefinition type, Set<String> superTypes) {
+        if (hierarchy != null) {
+            TypeHierarchy th = hierarchy.get(type);
+            if (th != null) {
+                collectSuperTypes(th, superTypes);
+                return;
+            }
+        }
+        collectSuperTypes(type.getBaseType(), superTypes);
+        for (TypeReference iface : type.getExplicitInterfaces())
+            collectSuperTypes(iface, superTypes);
+    }
+
+    private static void collectSuperTypes(TypeHierarchy th, Set<String> superTypes) {
+        for (TypeHierarchy superTh : th.getSuperClasses()) {
+            if (superTypes.add(superTh.getInternalName()))
+                collectSuperTypes(superTh, superTypes);
+        }
+    }
+
+    private void collectSuperTypes(TypeReference tr, Set<String> superTypes) {
+        if (tr == null || !superTypes.add(tr.getInternalName()))
+            return;
+        TypeDefinition td = tr.resolve();
+        if (td != null)
+            collectSuperTypes(td, superTypes);
+    }
+
+    /**
+     * @param loader type loader used by the analysis
+     * @return type loader which also records the hashes of the loaded class files, so the keys are created without
+     *         reading them again
+     */
+    public ITypeLoader createHashingLoader(ITypeLoader loader) {
+        return (internalName, buffer) -> {
+            if (!loader.tryLoadType(internalName, buffer))
+                return false;
+            if (!typeHashes.containsKey(internalName))
+                typeHashes.putIfAbsent(internalName, hash(buffer));
+            return true;
+        };
+    }
+
+    private String getTypeHash(String internalName) {
+        // Types which were not loaded by the analysis (e.g. boot class path types) are read here
+        return typeHashes.computeIfAbsent(internalName, name -> {
+            Buffer buffer = new Buffer();
+            if (!loader.get().tryLoadType(name, buffer))
+                return "";
+            return hash(buffer);
+        });
+    }
+
+    private static String hash(Buffer buffer) {
+        MessageDigest digest = createDigest();
+        digest.update(buffer.array(), 0, buffer.size());
+        return toHex(digest.digest());
+    }
+
+    private List<Warning> readWarnings(byte[] data) throws IOException {
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(data));
+        int count = dis.readInt();
+        List<Warning> warnings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Warning warning = WarningIO.readWarning(dis, types);
+            if (warning == null)
+                return null;
+            warnings.add(warning);
+        }
+        return warnings;
+    }
+
+    private static byte[] writeWarnings(List<Warning> warnings) throws UnsupportedValueException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (DataOutputStream dos = new DataOutputStream(baos)) {
+            dos.writeInt(warnings.size());
+            for (Warning warning : warnings) {
+                WarningIO.writeWarning(dos, warning);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * @param cls class to get the code source of
+     * @return hash of the jar file or the class files directory the given class was loaded from; the implementation
+     *         version if the code source cannot be read
+     */
+    static String getCodeHash(Class<?> cls) {
+        MessageDigest digest = createDigest();
+        try {
+            CodeSource source = cls.getProtectionDomain().getCodeSource();
+            if (source == null || source.getLocation() == null)
+                return String.valueOf(cls.getPackage().getImplementationVersion());
+            Path root = Paths.get(source.getLocation().toURI());
+            if (Files.isDirectory(root)) {
+                List<Path> files;
+                try (Stream<Path> stream = Files.walk(root)) {
+                    files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+                for (Path file : files) {
+                    digest.update(root.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                    digest.update(Files.readAllBytes(file));
+                }
+            } else {
+                try (InputStream is = new DigestInputStream(Files.newInputStream(root), digest)) {
+                    byte[] buf = new byte[8192];
+                    while (is.read(buf) >= 0) {
+                        // just digesting
+                    }
+                }
+            }
+        } catch (IOException | URISyntaxException | IllegalArgumentException | SecurityException e) {
+            return String.valueOf(cls.getPackage().getImplementationVersion());
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @return new digest used for the cache and snapshot signatures
+     */
+    public static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    /**
+     * @param bytes digest to convert
+     * @return fixed-width lowercase hexadecimal representation of the digest
+     */
+    public static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
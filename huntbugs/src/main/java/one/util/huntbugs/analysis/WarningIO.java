@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.analysis;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import one.util.huntbugs.warning.Warning;
+import one.util.huntbugs.warning.WarningAnnotation;
+import one.util.huntbugs.warning.WarningAnnotation.Location;
+import one.util.huntbugs.warning.WarningAnnotation.MemberInfo;
+import one.util.huntbugs.warning.WarningAnnotation.TypeInfo;
+import one.util.huntbugs.warning.WarningType;
+
+/**
+ * Binary serialization of warnings used by {@link WarningCache} and {@link FileWarningSink}.
+ * 
+ * @author lan
+ *
+ */
+final class WarningIO {
+    static class UnsupportedValueException extends Exception {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private WarningIO() {
+    }
+
+    /**
+     * @param dis input to read from
+     * @param types function to find warning type by name
+     * @return the warning or null if its type is unknown
+     * @throws IOException if input fails
+     */
+    static Warning readWarning(DataInput dis, Function<String, WarningType> types) throws IOException {
+        WarningType type = types.apply(dis.readUTF());
+        int priority = dis.readInt();
+        int annoCount = dis.readInt();
+        List<WarningAnnotation<?>> annotations = new ArrayList<>(annoCount);
+        for (int j = 0; j < annoCount; j++) {
+            String role = dis.readUTF();
+            annotations.add(new WarningAnnotation<>(role, readValue(dis)));
+        }
+        return type == null ? null : new Warning(type, priority, annotations);
+    }
+
+    /**
+     * @param dos output to write to
+     * @param warning warning to write
+     * @throws IOException if output fails
+     * @throws UnsupportedValueException if some annotation value cannot be serialized; the output is corrupted in
+     *         this case
+     */
+    static void writeWarning(DataOutput dos, Warning warning) throws IOException, UnsupportedValueException {
+        dos.writeUTF(warning.getType().getName());
+        dos.writeInt(warning.getPriority());
+        List<WarningAnnotation<?>> annotations = new ArrayList<>();
+        warning.annotations().forEach(annotations::add);
+        dos.writeInt(annotations.size());
+        for (WarningAnnotation<?> anno : annotations) {
+            dos.writeUTF(anno.getRole());
+            writeValue(dos, anno.getValue());
+        }
+    }
+
+    private static Object readValue(DataInput dis) throws IOException {
+        char tag = (char) dis.readByte();
+        switch (tag) {
+        case 'N':
+            return null;
+        case 'S':
+            return dis.readUTF();
+        case 'I':
+            return dis.readInt();
+        case 'J':
+            return dis.readLong();
+        case 'F':
+            return dis.readFloat();
+        case 'D':
+            return dis.readDouble();
+        case 'Z':
+            return dis.readBoolean();
+        case 'C':
+            return dis.readChar();
+        case 'T':
+            return new TypeInfo(dis.readUTF());
+        case 'M':
+            return new MemberInfo(dis.readUTF(), dis.readUTF(), dis.readUTF());
+        case 'L':
+            return new Location(dis.readInt(), dis.readInt());
+        default:
+            throw new IOException("Unexpected value tag: " + tag);
+        }
+    }
+
+    private static void writeValue(DataOutput dos, Object value) throws IOException, UnsupportedValueException {
+        if (value == null) {
+            dos.writeByte('N');
+        } else if (value instanceof String) {
+            dos.writeByte('S');
+            dos.writeUTF((String) value);
+        } else if (value instanceof Integer) {
+            dos.writeByte('I');
+            dos.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            dos.writeByte('J');
+            dos.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            dos.writeByte('F');
+            dos.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            dos.writeByte('D');
+            dos.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            dos.writeByte('Z');
+            dos.writeBoolean((Boolean) value);
+        } else if (value instanceof Character) {
+            dos.writeByte('C');
+            dos.writeChar((Character) value);
+        } else if (value instanceof TypeInfo) {
+            dos.writeByte('T');
+            dos.writeUTF(((TypeInfo) value).getTypeName());
+        } else if (value instanceof MemberInfo) {
+            MemberInfo mi = (MemberInfo) value;
+            dos.writeByte('M');
+            dos.writeUTF(mi.getTypeName());
+            dos.writeUTF(mi.getName());
+            dos.writeUTF(mi.getSignature());
+        } else if (value instanceof Location) {
+            Location loc = (Location) value;
+            dos.writeByte('L');
+            dos.writeInt(loc.getOffset());
+            dos.writeInt(loc.getSourceLine());
+        } else {
+            throw new UnsupportedValueException();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.analysis;
+
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import one.util.huntbugs.warning.Warning;
+
+/**
+ * Receives the warnings as soon as they are reported and provides them for the reports. The implementation may store
+ * warnings outside of the heap.
+ * 
+ * @author lan
+ *
+ * @see Context#setWarningSink(WarningSink)
+ */
+public interface WarningSink extends AutoCloseable {
+    /**
+     * Order in which warnings appear in the reports
+     */
+    Comparator<Warning> REPORT_ORDER = Comparator.comparingInt(Warning::getScore).reversed().thenComparing(
+        (Warning w) -> w.getType().getName()).thenComparing(Warning::getClassName);
+
+    /**
+     * Stores the warning.
+     * 
+     * @param warning warning to store
+     */
+    void add(Warning warning);
+
+    /**
+     * @return stream of all the stored warnings sorted by {@link #REPORT_ORDER}. Warnings which are equal according to
+     *         this order appear in the order they were added. Can be called several times.
+     */
+    Stream<Warning> warnings();
+
+    /**
+     * Releases the resources used to store the warnings. The sink must not be used after closing.
+     */
+    @Override
+    default void close() {
+    }
+}
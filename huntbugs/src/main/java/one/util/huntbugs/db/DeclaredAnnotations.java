@@ -15,6 +15,9 @@
  */
 package one.util.huntbugs.db;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 
@@ -25,6 +28,7 @@ import com.strobel.assembler.metadata.annotations.CustomAnnotation;
 import com.strobel.assembler.metadata.annotations.EnumAnnotationElement;
 
 import one.util.huntbugs.registry.AbstractTypeDatabase;
+import one.util.huntbugs.registry.SnapshotSupport;
 import one.util.huntbugs.registry.anno.TypeDatabase;
 import one.util.huntbugs.registry.anno.TypeDatabaseItem;
 import one.util.huntbugs.util.Types;
@@ -34,7 +38,8 @@ import one.util.huntbugs.util.Types;
  *
  */
 @TypeDatabase
-public class DeclaredAnnotations extends AbstractTypeDatabase<DeclaredAnnotations.DeclaredAnnotation> {
+public class DeclaredAnnotations extends AbstractTypeDatabase<DeclaredAnnotations.DeclaredAnnotation> implements
+        SnapshotSupport {
 
     public DeclaredAnnotations() {
         super(type -> new DeclaredAnnotation());
@@ -44,7 +49,23 @@ public class DeclaredAnnotations extends AbstractTypeDatabase<DeclaredAnnotation
     protected void visitType(TypeDefinition td) {
         if (!td.isAnnotation())
             return;
-        DeclaredAnnotation da = getOrCreate(td);
+        getOrCreate(td).policy = getPolicy(td);
+    }
+
+    @Override
+    public void writeType(TypeDefinition td, DataOutput out) throws IOException {
+        out.writeByte(td.isAnnotation() ? getPolicy(td).ordinal() : -1);
+    }
+
+    @Override
+    public void readType(String internalName, DataInput in) throws IOException {
+        int policy = in.readByte();
+        if (policy >= 0)
+            getOrCreate(internalName).policy = RetentionPolicy.values()[policy];
+    }
+
+    private static RetentionPolicy getPolicy(TypeDefinition td) {
+        RetentionPolicy policy = RetentionPolicy.CLASS;
         for (CustomAnnotation ca : td.getAnnotations()) {
             if (Types.is(ca.getAnnotationType(), Retention.class)) {
                 for (AnnotationParameter ap : ca.getParameters()) {
@@ -53,13 +74,14 @@ public class DeclaredAnnotations extends AbstractTypeDatabase<DeclaredAnnotation
                         if (value instanceof EnumAnnotationElement) {
                             EnumAnnotationElement enumValue = (EnumAnnotationElement) value;
                             if (Types.is(enumValue.getEnumType(), RetentionPolicy.class)) {
-                                da.policy = RetentionPolicy.valueOf(enumValue.getEnumConstantName());
+                                policy = RetentionPolicy.valueOf(enumValue.getEnumConstantName());
                             }
                         }
                     }
                 }
             }
         }
+        return policy;
     }
 
     @TypeDatabaseItem(parentDatabase = DeclaredAnnotations.class)
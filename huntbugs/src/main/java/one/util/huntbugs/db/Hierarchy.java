@@ -15,27 +15,95 @@
  */
 package one.util.huntbugs.db;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.function.Function;
 
 import com.strobel.assembler.metadata.Flags;
 import com.strobel.assembler.metadata.TypeDefinition;
 import com.strobel.assembler.metadata.TypeReference;
 
 import one.util.huntbugs.registry.AbstractTypeDatabase;
+import one.util.huntbugs.registry.SnapshotSupport;
 import one.util.huntbugs.registry.anno.TypeDatabase;
 import one.util.huntbugs.registry.anno.TypeDatabaseItem;
 import one.util.huntbugs.util.Types;
 
 /**
+ * Types are numbered densely and the links are kept in the int arrays indexed by type id. Subtype queries are answered
+ * by interval labels. The spanning tree which links every type to its first supertype (the superclass for classes) is
+ * numbered in post-order, so the subtypes within the tree form the single interval and the check is constant time.
+ * Subtypes reachable via the other (interface) links are kept as the separate sorted list of intervals, which is
+ * checked by the binary search. The labels are computed on the first query after the database was updated.
+ * 
  * @author lan
  *
  */
 @TypeDatabase
-public class Hierarchy extends AbstractTypeDatabase<Hierarchy.TypeHierarchy> {
+public class Hierarchy extends AbstractTypeDatabase<Hierarchy.TypeHierarchy> implements SnapshotSupport {
+    private static final int[] NO_IDS = {};
+
+    private final Ids ids;
+    private int[][] superIds = new int[1024][];
+    private int[][] subIds = new int[1024][];
+    private int[] subCount = new int[1024];
+    private boolean[] subClassesOutOfPackage = new boolean[1024];
+    private volatile Labels labels;
+
+    /**
+     * Dense type numbering. Created before the database as the element supplier cannot refer to the database itself.
+     */
+    private static class Ids implements Function<String, TypeHierarchy> {
+        Hierarchy hierarchy;
+        TypeHierarchy[] types = new TypeHierarchy[1024];
+        int count;
+
+        @Override
+        public TypeHierarchy apply(String name) {
+            if (count == types.length)
+                types = Arrays.copyOf(types, count * 2);
+            hierarchy.ensureCapacity(count + 1);
+            TypeHierarchy th = new TypeHierarchy(hierarchy, name, count);
+            types[count++] = th;
+            return th;
+        }
+    }
+
+    /**
+     * Interval labels valid until the next update
+     */
+    private static class Labels {
+        // tree interval is [low, post]
+        final int[] low;
+        final int[] post;
+        final int[][] extra;
+        final boolean[] fullyResolved;
+
+        Labels(int count) {
+            low = new int[count];
+            post = new int[count];
+            extra = new int[count][];
+            fullyResolved = new boolean[count];
+        }
+    }
+
     public Hierarchy() {
-        super(TypeHierarchy::new);
+        this(new Ids());
+    }
+
+    private Hierarchy(Ids ids) {
+        super(ids);
+        this.ids = ids;
+        ids.hierarchy = this;
     }
 
     @Override
@@ -45,25 +113,254 @@ public class Hierarchy extends AbstractTypeDatabase<Hierarchy.TypeHierarchy> {
         link(th, td.getBaseType());
         for (TypeReference id : td.getExplicitInterfaces())
             link(th, id);
+        labels = null;
     }
 
     private void link(TypeHierarchy th, TypeReference superType) {
         if (superType == null || Types.isObject(superType))
             return;
-        TypeHierarchy superTh = getOrCreate(superType);
-        th.superClasses.add(superTh);
-        superTh.subClasses.add(th);
+        link(th, superType.getInternalName());
+    }
+
+    private void link(TypeHierarchy th, String superName) {
+        TypeHierarchy superTh = getOrCreate(superName);
+        int[] supers = superIds[th.id];
+        if (supers == null)
+            supers = NO_IDS;
+        for (int id : supers) {
+            if (id == superTh.id)
+                return;
+        }
+        supers = Arrays.copyOf(supers, supers.length + 1);
+        supers[supers.length - 1] = superTh.id;
+        superIds[th.id] = supers;
+        int[] subs = subIds[superTh.id];
+        if (subs == null)
+            subs = subIds[superTh.id] = new int[2];
+        else if (subCount[superTh.id] == subs.length)
+            subs = subIds[superTh.id] = Arrays.copyOf(subs, subs.length * 2);
+        subs[subCount[superTh.id]++] = th.id;
+        if (!Types.samePackage(superName, th.internalName))
+            subClassesOutOfPackage[superTh.id] = true;
+    }
+
+    private void ensureCapacity(int count) {
+        if (count <= superIds.length)
+            return;
+        int size = Math.max(count, superIds.length * 2);
+        superIds = Arrays.copyOf(superIds, size);
+        subIds = Arrays.copyOf(subIds, size);
+        subCount = Arrays.copyOf(subCount, size);
+        subClassesOutOfPackage = Arrays.copyOf(subClassesOutOfPackage, size);
+    }
+
+    private Set<TypeHierarchy> types(int[] typeIds, int count) {
+        if (typeIds == null)
+            return Collections.emptySet();
+        TypeHierarchy[] types = ids.types;
+        // Links are deduplicated in link(), so the ids are distinct
+        return new AbstractSet<TypeHierarchy>() {
+            @Override
+            public Iterator<TypeHierarchy> iterator() {
+                return new Iterator<TypeHierarchy>() {
+                    int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < count;
+                    }
+
+                    @Override
+                    public TypeHierarchy next() {
+                        if (index >= count)
+                            throw new NoSuchElementException();
+                        return types[typeIds[index++]];
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    private Labels getLabels() {
+        Labels l = labels;
+        if (l == null) {
+            synchronized (this) {
+                l = labels;
+                if (l == null)
+                    labels = l = computeLabels();
+            }
+        }
+        return l;
+    }
+
+    private Labels computeLabels() {
+        int count = ids.count;
+        Labels l = new Labels(count);
+        Arrays.fill(l.post, -1);
+        int[] next = {0};
+        // Spanning tree follows the first supertype (the superclass for classes). Start from the roots, then from
+        // the types left unvisited due to (malformed) cyclic links
+        for (int id = 0; id < count; id++) {
+            if (superIds[id] == null)
+                labelTree(l, id, next);
+        }
+        for (int id = 0; id < count; id++) {
+            if (l.post[id] == -1)
+                labelTree(l, id, next);
+        }
+        byte[] state = new byte[count];
+        for (int id = 0; id < count; id++) {
+            labelExtra(l, state, id);
+        }
+        state = new byte[count];
+        for (int id = 0; id < count; id++) {
+            isFullyResolved(l, state, id);
+        }
+        return l;
+    }
+
+    private boolean isTreeEdge(int id, int sub) {
+        return superIds[sub][0] == id;
+    }
+
+    private void labelTree(Labels l, int id, int[] next) {
+        l.post[id] = -2;
+        int low = Integer.MAX_VALUE;
+        int[] subs = subIds[id];
+        for (int i = 0; i < subCount[id]; i++) {
+            int sub = subs[i];
+            if (l.post[sub] == -1 && isTreeEdge(id, sub)) {
+                labelTree(l, sub, next);
+                low = Math.min(low, l.low[sub]);
+            }
+        }
+        int post = next[0]++;
+        l.post[id] = post;
+        l.low[id] = Math.min(low, post);
+    }
+
+    /**
+     * Computes the intervals of subtypes which are reachable via non-tree (interface) links and are not covered by
+     * the tree interval. Children are processed first, then all their intervals are merged in one pass.
+     */
+    private int[] labelExtra(Labels l, byte[] state, int id) {
+        if (state[id] != 0)
+            return l.extra[id];
+        // Cyclic links are ignored
+        state[id] = 1;
+        int[] subs = subIds[id];
+        long[] intervals = null;
+        int size = 0;
+        for (int i = 0; i < subCount[id]; i++) {
+            int sub = subs[i];
+            int[] subExtra = labelExtra(l, state, sub);
+            int needed = size + 1 + (subExtra == null ? 0 : subExtra.length / 2);
+            if (intervals == null)
+                intervals = new long[Math.max(needed, 4)];
+            else if (intervals.length < needed)
+                intervals = Arrays.copyOf(intervals, Math.max(needed, intervals.length * 2));
+            // Tree interval of the tree child is dropped by merge as it's covered
+            intervals[size++] = interval(l.low[sub], l.post[sub]);
+            if (subExtra != null) {
+                for (int j = 0; j < subExtra.length; j += 2)
+                    intervals[size++] = interval(subExtra[j], subExtra[j + 1]);
+            }
+        }
+        l.extra[id] = merge(intervals, size, l.low[id], l.post[id]);
+        state[id] = 2;
+        return l.extra[id];
+    }
+
+    private static long interval(int start, int end) {
+        return ((long) start << 32) | end;
+    }
+
+    /**
+     * @param intervals intervals encoded by {@link #interval(int, int)}
+     * @param size number of intervals
+     * @param low start of the tree interval
+     * @param high end of the tree interval
+     * @return sorted disjoint [start, end] pairs covering the input without the tree interval (null if empty),
+     *         adjacent intervals are joined
+     */
+    static int[] merge(long[] intervals, int size, int low, int high) {
+        if (size == 0)
+            return null;
+        Arrays.sort(intervals, 0, size);
+        int[] result = new int[size * 2];
+        int resultSize = 0;
+        for (int i = 0; i < size; i++) {
+            int start = (int) (intervals[i] >>> 32);
+            int end = (int) intervals[i];
+            if (start >= low && end <= high)
+                continue;
+            if (resultSize > 0 && start <= result[resultSize - 1] + 1) {
+                result[resultSize - 1] = Math.max(result[resultSize - 1], end);
+            } else {
+                result[resultSize++] = start;
+                result[resultSize++] = end;
+            }
+        }
+        return resultSize == 0 ? null : Arrays.copyOf(result, resultSize);
+    }
+
+    private boolean isFullyResolved(Labels l, byte[] state, int id) {
+        if (state[id] == 0) {
+            // Cyclic links are never resolved
+            state[id] = 1;
+            boolean resolved = ids.types[id].isResolved();
+            if (resolved && superIds[id] != null) {
+                for (int superId : superIds[id]) {
+                    if (!isFullyResolved(l, state, superId)) {
+                        resolved = false;
+                        break;
+                    }
+                }
+            }
+            l.fullyResolved[id] = resolved;
+            state[id] = 2;
+        }
+        return l.fullyResolved[id];
+    }
+
+    @Override
+    public void writeType(TypeDefinition td, DataOutput out) throws IOException {
+        out.writeLong(td.getFlags());
+        List<TypeReference> supers = new ArrayList<>();
+        supers.add(td.getBaseType());
+        supers.addAll(td.getExplicitInterfaces());
+        supers.removeIf(st -> st == null || Types.isObject(st));
+        out.writeShort(supers.size());
+        for (TypeReference st : supers)
+            out.writeUTF(st.getInternalName());
+    }
+
+    @Override
+    public void readType(String internalName, DataInput in) throws IOException {
+        TypeHierarchy th = getOrCreate(internalName);
+        th.flags = in.readLong();
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++)
+            link(th, in.readUTF());
+        labels = null;
     }
 
     @TypeDatabaseItem(parentDatabase = Hierarchy.class)
     public static class TypeHierarchy {
+        final Hierarchy hierarchy;
         final String internalName;
+        final int id;
         long flags = Flags.LOAD_BODY_FAILED;
-        final Set<TypeHierarchy> superClasses = new HashSet<>();
-        final Set<TypeHierarchy> subClasses = new HashSet<>();
 
-        public TypeHierarchy(String name) {
+        TypeHierarchy(Hierarchy hierarchy, String name, int id) {
+            this.hierarchy = hierarchy;
             this.internalName = name;
+            this.id = id;
         }
 
         public String getInternalName() {
@@ -71,17 +368,51 @@ public class Hierarchy extends AbstractTypeDatabase<Hierarchy.TypeHierarchy> {
         }
 
         public Set<TypeHierarchy> getSuperClasses() {
-            return Collections.unmodifiableSet(superClasses);
+            int[] supers = hierarchy.superIds[id];
+            return hierarchy.types(supers, supers == null ? 0 : supers.length);
         }
 
         public Set<TypeHierarchy> getSubClasses() {
-            return Collections.unmodifiableSet(subClasses);
+            return hierarchy.types(hierarchy.subIds[id], hierarchy.subCount[id]);
         }
         
         public boolean isResolved() {
             return !hasFlag(Flags.LOAD_BODY_FAILED);
         }
         
+        /**
+         * @return true if this type and all its supertypes are resolved, thus {@link #isSubTypeOf(TypeHierarchy)}
+         *         gives the exact answer
+         */
+        public boolean isFullyResolved() {
+            return hierarchy.getLabels().fullyResolved[id];
+        }
+        
+        /**
+         * @param other type from the same database
+         * @return true if this type is the same as other or extends or implements it directly or indirectly
+         */
+        public boolean isSubTypeOf(TypeHierarchy other) {
+            Labels l = hierarchy.getLabels();
+            int post = l.post[id];
+            if (post >= l.low[other.id] && post <= l.post[other.id])
+                return true;
+            int[] extra = l.extra[other.id];
+            if (extra == null)
+                return false;
+            int lo = 0, hi = extra.length / 2 - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (post < extra[mid * 2])
+                    hi = mid - 1;
+                else if (post > extra[mid * 2 + 1])
+                    lo = mid + 1;
+                else
+                    return true;
+            }
+            return false;
+        }
+        
         public boolean hasFlag(long flag) {
             return Flags.testAny(flags, flag);
         }
@@ -92,11 +423,11 @@ public class Hierarchy extends AbstractTypeDatabase<Hierarchy.TypeHierarchy> {
         }
 
         public boolean hasSubClasses() {
-            return !subClasses.isEmpty();
+            return hierarchy.subCount[id] > 0;
         }
         
         public boolean hasSubClassesOutOfPackage() {
-            return !subClasses.stream().allMatch(sc -> Types.samePackage(internalName, sc.getInternalName()));
+            return hierarchy.subClassesOutOfPackage[id];
         }
     }
 }
@@ -33,7 +33,7 @@ import one.util.huntbugs.warning.WarningAnnotation;
  */
 @WarningDefinition(category = "Correctness", name = "AppendObjectOutputStream", maxScore = 65)
 public class AppendObjectOutputStream {
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = { AstCode.InitObject })
     public void visit(Expression expr, MethodContext mc) {
         if (expr.getCode() != AstCode.InitObject)
             return;
@@ -30,7 +30,7 @@ import one.util.huntbugs.util.Nodes;
  */
 @WarningDefinition(category = "BadPractice", name = "AverageComputationCouldOverflow", maxScore = 35)
 public class AverageComputation {
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = { AstCode.LoadElement, AstCode.StoreElement })
     public void visitExpression(Expression expr, MethodContext mc) {
         if (expr.getCode() != AstCode.LoadElement && expr.getCode() != AstCode.StoreElement)
             return;
@@ -46,7 +46,8 @@ import one.util.huntbugs.warning.WarningAnnotation;
 @WarningDefinition(category = "Correctness", name = "BitAddSignedByte", maxScore = 35)
 // TODO: procyon optimizes too hard to detect "UselessAndWithZero"
 public class BadMath {
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = { AstCode.Rem, AstCode.Add, AstCode.Or, AstCode.Xor, AstCode.And,
+            AstCode.CmpGt, AstCode.CmpLt, AstCode.CmpEq, AstCode.CmpNe, AstCode.Shl, AstCode.Shr, AstCode.UShr })
     public void visit(Expression expr, NodeChain nc, MethodContext mc) {
         TypeReference inferredType = expr.getInferredType();
         if (inferredType == null)
@@ -55,7 +55,9 @@ import one.util.huntbugs.warning.WarningAnnotation;
 @WarningDefinition(category = "Correctness", name = "DateBadMonth", maxScore = 70)
 @WarningDefinition(category = "Correctness", name = "CollectionAddedToItself", maxScore = 65)
 public class BadMethodCalls {
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS,
+        codes = { AstCode.InvokeStatic, AstCode.InvokeSpecial,
+            AstCode.InvokeVirtual, AstCode.InvokeInterface, AstCode.InitObject })
     public void visit(Expression node, NodeChain nc, MethodContext ctx, MethodDefinition curMethod) {
         if (Nodes.isInvoke(node) && node.getCode() != AstCode.InvokeDynamic) {
             check(node, (MethodReference) node.getOperand(), nc, ctx, curMethod);
@@ -35,7 +35,7 @@ import one.util.huntbugs.warning.WarningAnnotation;
 @WarningDefinition(category="Multithreading", name="SynchronizationOnBoxedNumber", maxScore=65)
 @WarningDefinition(category="Multithreading", name="SynchronizationOnUnsharedBoxed", maxScore=40)
 public class BadMonitorObject {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.MonitorEnter})
     public void visit(Expression expr, MethodContext mc) {
         if(expr.getCode() == AstCode.MonitorEnter) {
             Expression arg = Nodes.getChild(expr, 0);
@@ -32,6 +32,7 @@ import com.strobel.decompiler.ast.Expression;
 import one.util.huntbugs.db.Hierarchy.TypeHierarchy;
 import one.util.huntbugs.registry.ClassContext;
 import one.util.huntbugs.registry.MethodContext;
+import one.util.huntbugs.registry.Resettable;
 import one.util.huntbugs.registry.anno.AstNodes;
 import one.util.huntbugs.registry.anno.AstVisitor;
 import one.util.huntbugs.registry.anno.ClassVisitor;
@@ -47,10 +48,15 @@ import one.util.huntbugs.util.Types;
 @WarningDefinition(category="BadPractice", name="CloneableDoesNotImplementClone", maxScore=50)
 @WarningDefinition(category="BadPractice", name="CloneableNoSuperCall", maxScore=60)
 @WarningDefinition(category="BadPractice", name="NotCloneableHasClone", maxScore=55)
-public class CloneContract {
+public class CloneContract implements Resettable {
     private boolean hasClone;
     private boolean implementsCloneable;
     private boolean isCloneable;
+
+    @Override
+    public void reset() {
+        hasClone = implementsCloneable = isCloneable = false;
+    }
     
     @ClassVisitor(order=VisitOrder.BEFORE)
     public boolean beforeClass(TypeDefinition td) {
@@ -62,7 +68,7 @@ public class CloneContract {
         return true;
     }
 
-    @AstVisitor(nodes=AstNodes.ROOT, methodName="clone")
+    @AstVisitor(nodes=AstNodes.ROOT, methodName="clone", dataflow=false)
     public void visitBody(MethodDefinition md, Block body, TypeDefinition td, MethodContext mc, TypeHierarchy th) {
         if(!md.isSynthetic() && md.getErasedSignature().startsWith("()")) {
             hasClone = true;
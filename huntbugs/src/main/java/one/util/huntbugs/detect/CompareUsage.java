@@ -36,7 +36,7 @@ import one.util.huntbugs.warning.WarningAnnotation;
 @WarningDefinition(category = "BadPractice", name = "NegatingComparatorResult", maxScore = 60)
 @WarningDefinition(category = "Correctness", name = "ComparingComparatorResultWithNumber", maxScore = 70)
 public class CompareUsage {
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = { AstCode.Neg, AstCode.CmpEq, AstCode.CmpNe })
     public void visit(Expression expr, MethodContext mc) {
         if (expr.getCode() == AstCode.Neg) {
             Expression child = ValuesFlow.findFirst(Nodes.getChild(expr, 0), this::isCompare);
@@ -37,7 +37,7 @@ import one.util.huntbugs.warning.WarningAnnotation;
 @WarningDefinition(category="RedundantCode", name="SameConditions", maxScore=50)
 @WarningDefinition(category="RedundantCode", name="SameConditionsExcluding", maxScore=70)
 public class ConditionChain {
-    @AstVisitor
+    @AstVisitor(dataflow=false)
     public void visit(Node node, MethodContext mc, MethodDefinition md) {
         if(node instanceof Condition) {
             Condition cond = (Condition)node;
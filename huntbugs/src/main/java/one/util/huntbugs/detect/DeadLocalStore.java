@@ -45,9 +45,10 @@ import one.util.huntbugs.util.Types;
 @WarningDefinition(category="RedundantCode", name="DeadStoreInReturn", maxScore=50)
 @WarningDefinition(category="RedundantCode", name="DeadIncrementInReturn", maxScore=60)
 public class DeadLocalStore {
-    @AstVisitor(nodes=AstNodes.ROOT)
+    // Parameter usages come from the dataflow, so it is requested only for methods having parameters
+    @AstVisitor(nodes=AstNodes.ROOT, dataflow=false)
     public void visitBody(Block body, MethodContext mc, MethodDefinition md) {
-        if(!mc.isAnnotated())
+        if(md.getParameters().isEmpty() || !mc.isAnnotated())
             return;
         for(ParameterDefinition pd : md.getParameters()) {
             // looks like autogenerated by jay
@@ -68,7 +69,7 @@ public class DeadLocalStore {
         }
     }
     
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.Return}, dataflow=false)
     public void visit(Expression expr, MethodContext mc) {
         if(expr.getCode() == AstCode.Return && expr.getArguments().size() == 1) {
             Expression arg = expr.getArguments().get(0);
@@ -43,7 +43,7 @@ public class DubiousCatch {
         EXCEPTION_TO_WARNING.put("java/util/ConcurrentModificationException", "CatchConcurrentModificationException");
     }
     
-    @AstVisitor
+    @AstVisitor(dataflow=false)
     public void visit(Node node, MethodContext mc) {
         if(node instanceof CatchBlock) {
             CatchBlock block = (CatchBlock)node;
@@ -42,7 +42,7 @@ public class EasyMockProblems {
             entry -> entry instanceof TypeInfoEntry && ((TypeInfoEntry) entry).getName().startsWith("org/easymock/"));
     }
 
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = { AstCode.InvokeStatic })
     public void visit(Expression expr, MethodContext mc) {
         if (expr.getCode() == AstCode.InvokeStatic) {
             MethodReference mr = (MethodReference) expr.getOperand();
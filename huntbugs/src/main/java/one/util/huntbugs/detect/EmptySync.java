@@ -33,7 +33,7 @@ import one.util.huntbugs.util.Nodes;
  */
 @WarningDefinition(category="Multithreading", name="EmptySynchronizeBlock", maxScore=50)
 public class EmptySync {
-    @AstVisitor
+    @AstVisitor(dataflow=false)
     public void visit(Node node, MethodContext mc) {
         if(node instanceof Block) {
             List<Node> body = ((Block) node).getBody();
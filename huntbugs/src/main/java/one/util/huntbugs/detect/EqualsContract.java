@@ -115,7 +115,8 @@ public class EqualsContract {
         return priority;
     }
 
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS, methodName = "equals", methodSignature = "(Ljava/lang/Object;)Z")
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS,
+        codes = { AstCode.InvokeVirtual }, methodName = "equals", methodSignature = "(Ljava/lang/Object;)Z")
     public void visitExpression(Expression expr, MethodContext mc) {
         if (expr.getCode() == AstCode.InvokeVirtual) {
             if (Methods.isEqualsMethod((MethodReference) expr.getOperand())) {
@@ -24,6 +24,7 @@ import com.strobel.decompiler.ast.AstCode;
 import com.strobel.decompiler.ast.Expression;
 
 import one.util.huntbugs.registry.MethodContext;
+import one.util.huntbugs.registry.Resettable;
 import one.util.huntbugs.registry.anno.AstNodes;
 import one.util.huntbugs.registry.anno.AstVisitor;
 import one.util.huntbugs.registry.anno.MethodVisitor;
@@ -39,15 +40,20 @@ import one.util.huntbugs.warning.WarningAnnotation;
  */
 @WarningDefinition(category = "Correctness", name = "AndEqualsAlwaysFalse", maxScore = 70)
 @WarningDefinition(category = "Correctness", name = "OrNotEqualsAlwaysTrue", maxScore = 60)
-public class ExclusiveConditions {
+public class ExclusiveConditions implements Resettable {
     Set<Expression> reported;
 
+    @Override
+    public void reset() {
+        reported = null;
+    }
+
     @MethodVisitor
     public void init() {
         reported = new HashSet<>();
     }
 
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = { AstCode.LogicalAnd, AstCode.LogicalOr })
     public void visit(Expression expr, MethodContext mc) {
         if (expr.getCode() == AstCode.LogicalAnd) {
             if (Nodes.isSideEffectFree(expr)) {
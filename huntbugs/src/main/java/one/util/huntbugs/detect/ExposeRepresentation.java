@@ -51,7 +51,7 @@ public class ExposeRepresentation {
         return (md.isPublic() || md.isProtected()) && !md.getParameters().isEmpty();
     }
 
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = { AstCode.PutField, AstCode.PutStatic })
     public void visit(Expression expr, MethodContext mc, MethodDefinition md) {
         if (!md.isStatic() && expr.getCode() == AstCode.PutField) {
             FieldDefinition fd = ((FieldReference) expr.getOperand()).resolve();
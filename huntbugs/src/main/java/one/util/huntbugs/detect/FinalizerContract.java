@@ -92,8 +92,8 @@ public class FinalizerContract {
             && isFinalizer((MethodReference) (((Expression) child).getOperand()));
     }
 
-    @AstVisitor
-    public void visit(Node node, MethodContext mc, MethodDefinition md) {
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = { AstCode.InvokeVirtual }, dataflow = false)
+    public void visit(Expression node, MethodContext mc, MethodDefinition md) {
         if (Nodes.isOp(node, AstCode.InvokeVirtual) && isFinalizer((MethodReference) ((Expression) node).getOperand())) {
             mc.report("FinalizeInvocation", isFinalizer(md) ? 10 : 0, node);
         }
@@ -15,6 +15,7 @@
  */
 package one.util.huntbugs.detect;
 
+import com.strobel.decompiler.ast.AstCode;
 import com.strobel.decompiler.ast.Expression;
 import one.util.huntbugs.registry.MethodContext;
 import one.util.huntbugs.registry.anno.AstNodes;
@@ -29,7 +30,8 @@ import one.util.huntbugs.warning.WarningAnnotation;
  */
 @WarningDefinition(category="Correctness", name="FloatCompareToNaN", maxScore = 90)
 public class FloatingPointNaN {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS,
+        codes={AstCode.CmpEq, AstCode.CmpNe, AstCode.CmpLt, AstCode.CmpGe, AstCode.CmpGt, AstCode.CmpLe})
     public void visit(Expression node, MethodContext ctx) {
         if(node.getCode().isComparison()) {
             Nodes.ifBinaryWithConst(node, (arg, constant) -> {
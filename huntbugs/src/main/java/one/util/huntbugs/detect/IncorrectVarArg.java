@@ -33,7 +33,8 @@ import one.util.huntbugs.warning.WarningAnnotation;
  */
 @WarningDefinition(category="Correctness", name="PrimitiveArrayPassedAsVarArg", maxScore=60)
 public class IncorrectVarArg {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.InvokeStatic, AstCode.InvokeSpecial, AstCode.InvokeVirtual,
+            AstCode.InvokeInterface, AstCode.InitObject}, dataflow=false)
     public void visit(Expression expr, MethodContext mc) {
         if(expr.getOperand() instanceof MethodReference) {
             MethodReference mr = (MethodReference) expr.getOperand();
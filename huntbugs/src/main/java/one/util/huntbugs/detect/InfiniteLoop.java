@@ -36,7 +36,7 @@ import one.util.huntbugs.util.Nodes;
 @WarningDefinition(category = "Correctness", name = "InfiniteLoop", maxScore = 80)
 @WarningDefinition(category = "Correctness", name = "InvariantLoopCondition", maxScore = 55)
 public class InfiniteLoop {
-    @AstVisitor
+    @AstVisitor(dataflow=false)
     public void visit(Node node, MethodContext mc) {
         if (node instanceof Loop) {
             Loop loop = (Loop) node;
@@ -31,6 +31,7 @@ import com.strobel.decompiler.ast.TryCatchBlock;
 
 import one.util.huntbugs.flow.ValuesFlow;
 import one.util.huntbugs.registry.MethodContext;
+import one.util.huntbugs.registry.Resettable;
 import one.util.huntbugs.registry.anno.AstNodes;
 import one.util.huntbugs.registry.anno.AstVisitor;
 import one.util.huntbugs.registry.anno.MethodVisitor;
@@ -43,18 +44,24 @@ import one.util.huntbugs.util.Nodes;
  *
  */
 @WarningDefinition(category = "Correctness", name = "InfiniteRecursion", maxScore = 80)
-public class InfiniteRecursion {
+public class InfiniteRecursion implements Resettable {
     boolean stateChange;
     boolean controlTransfer;
 
+    @Override
+    public void reset() {
+        stateChange = controlTransfer = false;
+    }
+
     @MethodVisitor
     public void init() {
         stateChange = controlTransfer = false;
     }
 
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    // Tracks state changes over all the expressions, so the dataflow is requested only for the self calls
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, dataflow = false)
     public boolean visit(Expression expr, NodeChain nc, MethodContext mc, MethodDefinition md) {
-        if (selfCall(expr, md) && (!stateChange && checkArgs(expr) || !controlTransfer && checkControlFlow(nc))) {
+        if (selfCall(expr, md) && (!stateChange && mc.isAnnotated() && checkArgs(expr) || !controlTransfer && checkControlFlow(nc))) {
             mc.report("InfiniteRecursion", 0, expr);
         }
         if (expr.getCode() == AstCode.StoreElement || expr.getCode() == AstCode.PutField
@@ -77,7 +77,7 @@ public class Internationalization {
         add("java/util/Formatter", "<init>", "(Ljava/io/OutputStream;)V", "(Ljava/io/OutputStream;Ljava/lang/String;)V");
     }
     
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.InvokeVirtual, AstCode.InitObject})
     public void visit(Expression expr, MethodContext mc) {
         if(expr.getCode() == AstCode.InvokeVirtual || expr.getCode() == AstCode.InitObject) {
             MethodReference mr = (MethodReference) expr.getOperand();
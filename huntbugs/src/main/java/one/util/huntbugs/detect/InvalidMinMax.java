@@ -21,6 +21,7 @@ import com.strobel.decompiler.ast.Expression;
 import com.strobel.decompiler.ast.Node;
 
 import one.util.huntbugs.registry.MethodContext;
+import one.util.huntbugs.registry.anno.AstNodes;
 import one.util.huntbugs.registry.anno.AstVisitor;
 import one.util.huntbugs.registry.anno.WarningDefinition;
 import one.util.huntbugs.util.Nodes;
@@ -50,8 +51,8 @@ public class InvalidMinMax {
 		return NONE;
 	}
 
-	@AstVisitor
-	public void visit(Node node, MethodContext mc) {
+	@AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.InvokeStatic})
+	public void visit(Expression node, MethodContext mc) {
 		int outer = detectMethod(node);
 		if (outer == NONE)
 			return;
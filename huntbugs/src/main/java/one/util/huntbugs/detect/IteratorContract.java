@@ -46,7 +46,8 @@ public class IteratorContract {
         return Types.isInstance(td, "java/util/Iterator");
     }
 
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS, methodName = "hasNext", methodSignature = "()Z")
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS,
+        codes = { AstCode.InvokeVirtual }, methodName = "hasNext", methodSignature = "()Z")
     public void visitHasNext(Expression expr, MethodContext mc) {
         if (expr.getCode() == AstCode.InvokeVirtual) {
             MethodReference mr = (MethodReference) expr.getOperand();
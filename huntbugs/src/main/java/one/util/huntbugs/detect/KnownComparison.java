@@ -37,7 +37,8 @@ import one.util.huntbugs.warning.WarningAnnotation;
 @WarningDefinition(category = "RedundantCode", name = "ResultOfComparisonIsStaticallyKnown", maxScore = 50)
 @WarningDefinition(category = "RedundantCode", name = "ResultOfComparisonIsStaticallyKnownDeadCode", maxScore = 70)
 public class KnownComparison {
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS,
+        codes = { AstCode.CmpEq, AstCode.CmpNe, AstCode.CmpLt, AstCode.CmpGe, AstCode.CmpGt, AstCode.CmpLe })
     public void visit(Expression expr, NodeChain nc, MethodContext mc) {
         if (expr.getCode().isComparison()) {
             Object result = Nodes.getConstant(expr);
@@ -36,7 +36,7 @@ import one.util.huntbugs.warning.WarningAnnotation;
  */
 @WarningDefinition(category = "Multithreading", name = "IncorrectConcurrentMethod", maxScore = 70)
 public class LockProblems {
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = { AstCode.InvokeVirtual })
     public void visit(Expression expr, MethodContext mc) {
         if (expr.getCode() != AstCode.InvokeVirtual)
             return;
@@ -21,6 +21,7 @@ import com.strobel.decompiler.ast.Expression;
 import com.strobel.decompiler.ast.Node;
 
 import one.util.huntbugs.registry.MethodContext;
+import one.util.huntbugs.registry.anno.AstNodes;
 import one.util.huntbugs.registry.anno.AstVisitor;
 import one.util.huntbugs.registry.anno.WarningDefinition;
 import one.util.huntbugs.util.NodeChain;
@@ -34,8 +35,8 @@ import one.util.huntbugs.util.Types;
 @WarningDefinition(category="Correctness", name="AbsoluteValueOfHashCode", maxScore=60)
 @WarningDefinition(category="Correctness", name="AbsoluteValueOfRandomInt", maxScore=55)
 public class MinValueHandling {
-    @AstVisitor
-    public void visit(Node node, NodeChain chain, MethodContext mc) {
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.Rem, AstCode.InvokeStatic})
+    public void visit(Expression node, NodeChain chain, MethodContext mc) {
         if(Nodes.isOp(node, AstCode.Rem)) {
             Node body = Nodes.getChild(node, 0);
             Object modulus = Nodes.getConstant(Nodes.getChild(node, 1));
@@ -33,7 +33,8 @@ import one.util.huntbugs.util.Types;
 @WarningDefinition(category="Correctness", name="HashCodeRemainder", maxScore=80)
 @WarningDefinition(category="Correctness", name="RandomIntRemainder", maxScore=80)
 public class NegativeRemainder {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS,
+        codes={AstCode.StoreElement, AstCode.LoadElement, AstCode.InvokeInterface, AstCode.InvokeVirtual})
     public void visit(Expression expr, MethodContext mc) {
         switch(expr.getCode()) {
         case StoreElement:
@@ -32,7 +32,7 @@ import one.util.huntbugs.warning.WarningAnnotation;
  */
 @WarningDefinition(category="Performance", name="NewForGetClass", maxScore=50)
 public class NewGetClass {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.InvokeVirtual}, dataflow=false)
     public void visit(Expression node, MethodContext ctx) {
         if(node.getCode() == AstCode.InvokeVirtual) {
             MethodReference ref = (MethodReference) node.getOperand();
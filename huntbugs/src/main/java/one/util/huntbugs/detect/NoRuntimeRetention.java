@@ -37,7 +37,7 @@ import one.util.huntbugs.warning.WarningAnnotation;
  */
 @WarningDefinition(category="Correctness", name="AnnotationNoRuntimeRetention", maxScore=75)
 public class NoRuntimeRetention {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.InvokeVirtual})
     public void visit(Expression expr, MethodContext mc, DeclaredAnnotations da) {
         if(expr.getCode() == AstCode.InvokeVirtual && expr.getArguments().size() == 2) {
             MethodReference mr = (MethodReference) expr.getOperand();
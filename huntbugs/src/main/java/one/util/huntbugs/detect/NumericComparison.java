@@ -95,14 +95,15 @@ public class NumericComparison {
         }
     }
 
-    @AstVisitor(nodes = AstNodes.ALL)
+    // Visits switches as well as comparisons, so the dataflow is requested only for these nodes
+    @AstVisitor(nodes = AstNodes.ALL, dataflow = false)
     public void visit(Node node, MethodContext mc) {
         if (Nodes.isComparison(node)) {
             Expression expr = (Expression) node;
             TypeReference type = expr.getArguments().get(0).getInferredType();
             if (type == null)
                 return;
-            if (!type.getSimpleType().isIntegral())
+            if (!type.getSimpleType().isIntegral() || !mc.isAnnotated())
                 return;
             AstCode code = expr.getCode();
             Expression arg;
@@ -158,7 +159,7 @@ public class NumericComparison {
                 WarningAnnotation.forNumber(constant), new WarningAnnotation<>("MIN_VALUE", realRange.minValue),
                 new WarningAnnotation<>("MAX_VALUE", realRange.maxValue), new WarningAnnotation<>("RESULT", result));
         }
-        else if(node instanceof Switch) {
+        else if(node instanceof Switch && mc.isAnnotated()) {
             Switch switchNode = (Switch)node;
             Expression condition = switchNode.getCondition();
             JvmType type = condition.getInferredType() == null ? JvmType.Integer : condition.getInferredType().getSimpleType();
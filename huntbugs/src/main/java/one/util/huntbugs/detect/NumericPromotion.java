@@ -43,7 +43,8 @@ import one.util.huntbugs.warning.WarningAnnotation.Location;
 @WarningDefinition(category = "Correctness", name = "IntegerDivisionPromotedToFloat", maxScore = 65)
 @WarningDefinition(category = "Correctness", name = "IntegerPromotionInCeilOrRound", maxScore = 65)
 public class NumericPromotion {
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS,
+        codes = { AstCode.I2L, AstCode.I2F, AstCode.I2D, AstCode.L2F, AstCode.L2D })
     public void visit(Expression expr, NodeChain nc, MethodContext mc, MethodDefinition md) {
         if (expr.getCode() == AstCode.I2L) {
             Expression arg = expr.getArguments().get(0);
@@ -38,7 +38,7 @@ import one.util.huntbugs.warning.WarningAnnotation.MemberInfo;
 @WarningDefinition(category = "Correctness", name = "RandomDoubleToInt", maxScore = 80)
 @WarningDefinition(category = "Correctness", name = "RandomUsedOnlyOnce", maxScore = 80)
 public class RandomUsage {
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = { AstCode.D2I, AstCode.InvokeVirtual })
     public void visit(Expression node, MethodContext ctx) {
         if (node.getCode() == AstCode.D2I) {
             Expression child = Nodes.getChild(node, 0);
@@ -40,7 +40,7 @@ import one.util.huntbugs.warning.WarningAnnotation;
 @WarningDefinition(category="Correctness", name="RegexFileSeparator", maxScore=70)
 @WarningDefinition(category="Correctness", name="RegexBadSyntax", maxScore=80)
 public class RegexProblems {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.InvokeStatic, AstCode.InvokeVirtual})
     public void visit(Expression expr, MethodContext mc) {
         if(expr.getCode() == AstCode.InvokeStatic || expr.getCode() == AstCode.InvokeVirtual) {
             MethodReference mr = (MethodReference) expr.getOperand();
@@ -51,7 +51,7 @@ public class ReturnNull {
         return md.getReturnType().isArray() || TYPE_TO_WARNING.containsKey(md.getReturnType().getInternalName());
     }
 
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = { AstCode.Return })
     public void visit(Expression expr, NodeChain nc, MethodContext mc, MethodDefinition md, TypeDefinition td) {
         if (expr.getCode() == AstCode.Return && !expr.getArguments().isEmpty()) {
             Expression child = Nodes.getChild(expr, 0);
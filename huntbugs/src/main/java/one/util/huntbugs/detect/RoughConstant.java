@@ -99,7 +99,7 @@ public class RoughConstant {
         new BadConstant(Math.E, 1, "Math.E", 17)
     };
 
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.LdC}, dataflow=false)
     public void visit(Expression expr, MethodContext ctx, NodeChain parents) {
         // Not use Nodes.getConstant here as direct usage should only be reported
         if(expr.getCode() != AstCode.LdC)
@@ -58,7 +58,7 @@ public class SameBranches {
         return true;
     }
     
-    @AstVisitor
+    @AstVisitor(dataflow=false)
     public void visit(Node node, MethodContext mc) {
         if (node instanceof Condition) {
             Condition cond = (Condition) node;
@@ -107,7 +107,7 @@ public class SameBranches {
         }
     }
 
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.TernaryOp}, dataflow=false)
     public void visitExpr(Expression expr, MethodContext mc) {
         if (expr.getCode() == AstCode.TernaryOp
             && Equi.equiExpressions(expr.getArguments().get(1), expr.getArguments().get(2))) {
@@ -33,7 +33,9 @@ import one.util.huntbugs.warning.WarningAnnotation;
 @WarningDefinition(category = "Correctness", name = "SelfComputation", maxScore = 70)
 @WarningDefinition(category = "Correctness", name = "SelfComparison", maxScore = 70)
 public class SelfComputation {
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS,
+        codes = { AstCode.And, AstCode.Or, AstCode.Xor, AstCode.Sub, AstCode.Div, AstCode.Rem,
+            AstCode.CmpEq, AstCode.CmpNe, AstCode.CmpLt, AstCode.CmpGe, AstCode.CmpGt, AstCode.CmpLe }, dataflow = false)
     public void visit(Expression expr, MethodContext mc) {
         if (expr.getCode() == AstCode.And || expr.getCode() == AstCode.Or || expr.getCode() == AstCode.Xor
             || expr.getCode() == AstCode.Sub || expr.getCode() == AstCode.Div || expr.getCode() == AstCode.Rem) {
@@ -35,7 +35,7 @@ import one.util.huntbugs.warning.WarningAnnotation;
  */
 @WarningDefinition(category = "Multithreading", name = "SpinLoopOnField", maxScore = 70)
 public class SpinLoop {
-    @AstVisitor
+    @AstVisitor(dataflow=false)
     public void visit(Node node, MethodContext mc) {
         if (!(node instanceof Loop))
             return;
@@ -41,7 +41,7 @@ import one.util.huntbugs.util.Nodes;
  */
 @WarningDefinition(category = "Performance", name = "StringConcatInLoop", maxScore = 50)
 public class StringConcatInLoop {
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = { AstCode.Store })
     public void visit(Expression store, NodeChain nc, MethodContext mc) {
         if (store.getCode() != AstCode.Store)
             return;
@@ -33,7 +33,7 @@ import one.util.huntbugs.warning.WarningAnnotation;
 @WarningDefinition(category="Performance", name="StringConstructorEmpty", maxScore=55)
 @WarningDefinition(category="RedundantCode", name="StringToString", maxScore=40)
 public class StringUsage {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.InitObject, AstCode.InvokeVirtual}, dataflow=false)
     public void visit(Expression node, MethodContext mc) {
         if(node.getCode() == AstCode.InitObject) {
             MethodReference mr = (MethodReference) node.getOperand();
@@ -39,7 +39,7 @@ public class SwingProblems {
         return Methods.isMain(md);
     }
     
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.InvokeVirtual}, dataflow=false)
     public void visit(Expression expr, NodeChain nc, MethodContext mc) {
         if(expr.getCode() == AstCode.InvokeVirtual) {
             MethodReference mr = (MethodReference) expr.getOperand();
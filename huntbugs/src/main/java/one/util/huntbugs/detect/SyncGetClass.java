@@ -26,10 +26,12 @@ import com.strobel.decompiler.ast.TryCatchBlock;
 
 import one.util.huntbugs.db.Hierarchy.TypeHierarchy;
 import one.util.huntbugs.registry.MethodContext;
+import one.util.huntbugs.registry.anno.AstNodes;
 import one.util.huntbugs.registry.anno.AstVisitor;
 import one.util.huntbugs.registry.anno.MethodVisitor;
 import one.util.huntbugs.registry.anno.WarningDefinition;
 import one.util.huntbugs.util.Methods;
+import one.util.huntbugs.util.NodeChain;
 import one.util.huntbugs.util.Nodes;
 
 /**
@@ -43,20 +45,25 @@ public class SyncGetClass {
         return !td.isFinal() && !md.isStatic();
     }
     
-    @AstVisitor
-    public void visit(Node node, MethodContext mc, TypeHierarchy th, TypeDefinition td) {
-        if(node instanceof TryCatchBlock) {
-            Expression syncObject = Nodes.getSyncObject((TryCatchBlock) node);
-            if(syncObject != null) {
-                if(syncObject.getCode() == AstCode.InvokeVirtual && Methods.isGetClass((MethodReference) syncObject.getOperand())
-                        && Nodes.isThis(Nodes.getChild(syncObject, 0))) {
-                    int priority = 0;
-                    if(th != null && !th.hasSubClasses())
-                        priority += 10;
-                    if(Nodes.find(node, n -> isStaticFieldAccess(n, td)) == null)
-                        priority += 15;
-                    mc.report("SyncOnGetClass", priority, syncObject);
-                }
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = { AstCode.MonitorExit })
+    public void visit(Expression expr, NodeChain nc, MethodContext mc, TypeHierarchy th, TypeDefinition td) {
+        // MonitorExit is the only statement of the finally block generated for the synchronized block
+        NodeChain parent = nc.getParent();
+        if(parent == null || !(parent.getNode() instanceof TryCatchBlock))
+            return;
+        TryCatchBlock tcb = (TryCatchBlock) parent.getNode();
+        if(tcb.getFinallyBlock() != nc.getNode())
+            return;
+        Expression syncObject = Nodes.getSyncObject(tcb);
+        if(syncObject != null) {
+            if(syncObject.getCode() == AstCode.InvokeVirtual && Methods.isGetClass((MethodReference) syncObject.getOperand())
+                    && Nodes.isThis(Nodes.getChild(syncObject, 0))) {
+                int priority = 0;
+                if(th != null && !th.hasSubClasses())
+                    priority += 10;
+                if(Nodes.find(tcb, n -> isStaticFieldAccess(n, td)) == null)
+                    priority += 15;
+                mc.report("SyncOnGetClass", priority, syncObject);
             }
         }
     }
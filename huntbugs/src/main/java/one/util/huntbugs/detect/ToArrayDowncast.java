@@ -34,7 +34,7 @@ import one.util.huntbugs.warning.WarningAnnotation;
  */
 @WarningDefinition(category = "Correctness", name = "ImpossibleToArrayDowncast", maxScore = 65)
 public class ToArrayDowncast {
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = { AstCode.CheckCast })
     public void visit(Expression expr, MethodContext mc) {
         if (expr.getCode() != AstCode.CheckCast)
             return;
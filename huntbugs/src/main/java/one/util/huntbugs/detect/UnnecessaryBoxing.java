@@ -43,7 +43,8 @@ import one.util.huntbugs.warning.WarningAnnotation.Location;
 @WarningDefinition(category = "Performance", name = "BoxedForUnboxing", maxScore = 30)
 @WarningDefinition(category = "Performance", name = "UnboxedForBoxing", maxScore = 45)
 public class UnnecessaryBoxing {
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = { AstCode.InvokeVirtual, AstCode.InvokeStatic,
+        AstCode.InitObject })
     public void visit(Expression expr, MethodContext mc) {
         if (Nodes.isUnboxing(expr)) {
             Expression arg = expr.getArguments().get(0);
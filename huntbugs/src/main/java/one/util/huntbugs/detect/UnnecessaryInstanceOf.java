@@ -34,7 +34,7 @@ import one.util.huntbugs.warning.WarningAnnotation;
 @WarningDefinition(category = "RedundantCode", name = "UnnecessaryInstanceOf", maxScore = 60)
 @WarningDefinition(category = "RedundantCode", name = "UnnecessaryInstanceOfInferred", maxScore = 70)
 public class UnnecessaryInstanceOf {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.InstanceOf})
     public void visit(Expression node, MethodContext mc) {
         if(node.getCode() == AstCode.InstanceOf) {
             TypeReference typeRef = (TypeReference)node.getOperand();
@@ -39,7 +39,8 @@ import one.util.huntbugs.util.Nodes;
 @WarningDefinition(category = "Multithreading", name = "VolatileIncrement", maxScore = 85)
 @WarningDefinition(category = "Multithreading", name = "VolatileMath", maxScore = 85)
 public class VolatileIncrement {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS,
+        codes={AstCode.PreIncrement, AstCode.PostIncrement, AstCode.PutField, AstCode.PutStatic}, dataflow=false)
     public void visitNode(Expression node, MethodContext ctx, NodeChain parents, MethodDefinition md) {
         if (node.getCode() == AstCode.PreIncrement || node.getCode() == AstCode.PostIncrement) {
             Expression arg = node.getArguments().get(0);
@@ -43,7 +43,7 @@ import one.util.huntbugs.warning.WarningAnnotation;
 @WarningDefinition(category = "Multithreading", name = "WaitNotInLoop", maxScore = 65)
 @WarningDefinition(category = "Multithreading", name = "NotifyNaked", maxScore = 50)
 public class WaitContract {
-    @AstVisitor(nodes=AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes=AstNodes.EXPRESSIONS, codes={AstCode.InvokeVirtual}, dataflow=false)
     public void visit(Expression expr, NodeChain parents, MethodContext mc) {
         if (expr.getCode() == AstCode.InvokeVirtual) {
             MethodReference mr = (MethodReference) expr.getOperand();
@@ -32,7 +32,7 @@ import one.util.huntbugs.util.Types;
  */
 @WarningDefinition(category = "Performance", name = "WrongMapIterator", maxScore = 50)
 public class WrongMapIterator {
-    @AstVisitor(nodes = AstNodes.EXPRESSIONS)
+    @AstVisitor(nodes = AstNodes.EXPRESSIONS, codes = { AstCode.InvokeVirtual, AstCode.InvokeInterface })
     public void visit(Expression expr, MethodContext mc) {
         MethodReference getMr = getCalledMethod(expr);
         if (getMr != null && getMr.getName().equals("get")) {
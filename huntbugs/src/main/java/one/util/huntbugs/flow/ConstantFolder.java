@@ -0,0 +1,338 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.flow;
+
+import com.strobel.assembler.metadata.JvmType;
+import com.strobel.decompiler.ast.AstCode;
+
+/**
+ * Constant folding for the primitive arithmetic, comparison and conversion expressions. Operands are unboxed once and
+ * the operation is performed on the primitive values, so only the result is boxed.
+ * 
+ * @author lan
+ *
+ */
+final class ConstantFolder {
+    private ConstantFolder() {
+    }
+
+    /**
+     * @param code expression code
+     * @param type type of the expression (for comparisons: type of the first argument)
+     * @return boxed type of the (left) operand if given expression can be folded or null otherwise
+     */
+    static Class<?> getOperandType(AstCode code, JvmType type) {
+        switch (code) {
+        case I2L:
+        case I2B:
+        case I2C:
+        case I2S:
+        case I2D:
+        case I2F:
+            return Integer.class;
+        case L2I:
+        case L2D:
+        case L2F:
+            return Long.class;
+        case F2L:
+        case F2I:
+        case F2D:
+            return Float.class;
+        case D2F:
+        case D2I:
+        case D2L:
+            return Double.class;
+        case And:
+        case Or:
+        case Xor:
+        case Shl:
+        case Shr:
+        case UShr:
+            return type == JvmType.Integer ? Integer.class : type == JvmType.Long ? Long.class : null;
+        case Add:
+        case Sub:
+        case Mul:
+        case Div:
+        case Rem:
+        case Neg:
+        case CmpEq:
+        case CmpNe:
+        case CmpLt:
+        case CmpLe:
+        case CmpGt:
+        case CmpGe:
+            switch (type) {
+            case Integer:
+                return Integer.class;
+            case Long:
+                return Long.class;
+            case Double:
+                return Double.class;
+            case Float:
+                return Float.class;
+            default:
+                return null;
+            }
+        default:
+            return null;
+        }
+    }
+
+    static boolean isShift(AstCode code) {
+        return code == AstCode.Shl || code == AstCode.Shr || code == AstCode.UShr;
+    }
+
+    /**
+     * @param code unary expression code accepted by {@link #getOperandType(AstCode, JvmType)}
+     * @param arg operand value of the type returned by {@link #getOperandType(AstCode, JvmType)}
+     * @return the result or null if it cannot be folded
+     */
+    static Object fold(AstCode code, Object arg) {
+        if (arg instanceof Integer) {
+            int a = (Integer) arg;
+            switch (code) {
+            case I2L:
+                return (long) a;
+            case I2B:
+                return (int) (byte) a;
+            case I2C:
+                return (int) (char) a;
+            case I2S:
+                return (int) (short) a;
+            case I2D:
+                return (double) a;
+            case I2F:
+                return (float) a;
+            case Neg:
+                return -a;
+            default:
+            }
+        } else if (arg instanceof Long) {
+            long a = (Long) arg;
+            switch (code) {
+            case L2I:
+                return (int) a;
+            case L2D:
+                return (double) a;
+            case L2F:
+                return (float) a;
+            case Neg:
+                return -a;
+            default:
+            }
+        } else if (arg instanceof Float) {
+            float a = (Float) arg;
+            switch (code) {
+            case F2L:
+                return (long) a;
+            case F2I:
+                return (int) a;
+            case F2D:
+                return (double) a;
+            case Neg:
+                return -a;
+            default:
+            }
+        } else if (arg instanceof Double) {
+            double a = (Double) arg;
+            switch (code) {
+            case D2F:
+                return (float) a;
+            case D2I:
+                return (int) a;
+            case D2L:
+                return (long) a;
+            case Neg:
+                return -a;
+            default:
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param code binary expression code accepted by {@link #getOperandType(AstCode, JvmType)}
+     * @param left left operand value of the type returned by {@link #getOperandType(AstCode, JvmType)}
+     * @param right right operand value (Integer for shifts, the same type as left otherwise)
+     * @return the result or null if it cannot be folded (e.g. integral division by zero)
+     */
+    static Object fold(AstCode code, Object left, Object right) {
+        if (left instanceof Integer) {
+            return fold(code, (int) (Integer) left, (int) (Integer) right);
+        } else if (left instanceof Long) {
+            long a = (Long) left;
+            if (isShift(code))
+                return fold(code, a, (int) (Integer) right);
+            return fold(code, a, (long) (Long) right);
+        } else if (left instanceof Float) {
+            return fold(code, (float) (Float) left, (float) (Float) right);
+        } else if (left instanceof Double) {
+            return fold(code, (double) (Double) left, (double) (Double) right);
+        }
+        return null;
+    }
+
+    private static Object fold(AstCode code, int a, int b) {
+        if (b == 0 && (code == AstCode.Div || code == AstCode.Rem))
+            return null;
+        switch (code) {
+        case Add:
+            return a + b;
+        case Sub:
+            return a - b;
+        case Mul:
+            return a * b;
+        case Div:
+            return a / b;
+        case Rem:
+            return a % b;
+        case And:
+            return a & b;
+        case Or:
+            return a | b;
+        case Xor:
+            return a ^ b;
+        case Shl:
+            return a << b;
+        case Shr:
+            return a >> b;
+        case UShr:
+            return a >>> b;
+        case CmpEq:
+            return a == b;
+        case CmpNe:
+            return a != b;
+        case CmpLt:
+            return a < b;
+        case CmpLe:
+            return a <= b;
+        case CmpGt:
+            return a > b;
+        case CmpGe:
+            return a >= b;
+        default:
+            return null;
+        }
+    }
+
+    private static Object fold(AstCode code, long a, int b) {
+        switch (code) {
+        case Shl:
+            return a << b;
+        case Shr:
+            return a >> b;
+        case UShr:
+            return a >>> b;
+        default:
+            return null;
+        }
+    }
+
+    private static Object fold(AstCode code, long a, long b) {
+        if (b == 0 && (code == AstCode.Div || code == AstCode.Rem))
+            return null;
+        switch (code) {
+        case Add:
+            return a + b;
+        case Sub:
+            return a - b;
+        case Mul:
+            return a * b;
+        case Div:
+            return a / b;
+        case Rem:
+            return a % b;
+        case And:
+            return a & b;
+        case Or:
+            return a | b;
+        case Xor:
+            return a ^ b;
+        case CmpEq:
+            return a == b;
+        case CmpNe:
+            return a != b;
+        case CmpLt:
+            return a < b;
+        case CmpLe:
+            return a <= b;
+        case CmpGt:
+            return a > b;
+        case CmpGe:
+            return a >= b;
+        default:
+            return null;
+        }
+    }
+
+    private static Object fold(AstCode code, float a, float b) {
+        switch (code) {
+        case Add:
+            return a + b;
+        case Sub:
+            return a - b;
+        case Mul:
+            return a * b;
+        case Div:
+            return a / b;
+        case Rem:
+            return a % b;
+        case CmpEq:
+            return a == b;
+        case CmpNe:
+            return a != b;
+        case CmpLt:
+            return a < b;
+        case CmpLe:
+            return a <= b;
+        case CmpGt:
+            return a > b;
+        case CmpGe:
+            return a >= b;
+        default:
+            return null;
+        }
+    }
+
+    private static Object fold(AstCode code, double a, double b) {
+        switch (code) {
+        case Add:
+            return a + b;
+        case Sub:
+            return a - b;
+        case Mul:
+            return a * b;
+        case Div:
+            return a / b;
+        case Rem:
+            return a % b;
+        case CmpEq:
+            return a == b;
+        case CmpNe:
+            return a != b;
+        case CmpLt:
+            return a < b;
+        case CmpLe:
+            return a <= b;
+        case CmpGt:
+            return a > b;
+        case CmpGe:
+            return a >= b;
+        default:
+            return null;
+        }
+    }
+}
@@ -16,11 +16,12 @@
 package one.util.huntbugs.flow;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.BiFunction;
@@ -42,7 +43,7 @@ import com.strobel.decompiler.ast.Expression;
 import com.strobel.decompiler.ast.Variable;
 
 class Frame {
-    private final Map<Variable, Expression> sources;
+    private final SourceMap sources;
     private final MethodDefinition md;
     final Map<ParameterDefinition, Expression> initial;
     static final AstCode PHI_TYPE = AstCode.Wrap;
@@ -57,7 +58,7 @@ class Frame {
     }
 
     Frame(MethodDefinition md) {
-        this.sources = new IdentityHashMap<>();
+        this.sources = new SourceMap();
         this.md = md;
         this.initial = new IdentityHashMap<>();
         for(ParameterDefinition pd : md.getParameters()) {
@@ -101,119 +102,41 @@ class Frame {
             return target;
         }
         case CmpEq:
-            return processCmpEq(expr, target);
         case CmpNe:
-            return processCmpNe(expr, target);
         case CmpLt:
-            return processCmpLt(expr, target);
         case CmpLe:
-            return processCmpLe(expr, target);
         case CmpGt:
-            return processCmpGt(expr, target);
         case CmpGe:
-            return processCmpGe(expr, target);
+            return target.processBinaryOp(expr, getType(expr.getArguments().get(0)));
         case Add:
-            return processAdd(expr, target);
         case Sub:
-            return processSub(expr, target);
         case Mul:
-            return processMul(expr, target);
         case Div:
-            return processDiv(expr, target);
         case Rem:
-            return processRem(expr, target);
-        case Xor: {
-            switch (getType(expr)) {
-            case Integer:
-                return target.processBinaryOp(expr, Integer.class, Integer.class, (a, b) -> a ^ b);
-            case Long:
-                return target.processBinaryOp(expr, Long.class, Long.class, (a, b) -> a ^ b);
-            default:
-            }
-            return target;
-        }
-        case Or: {
-            switch (getType(expr)) {
-            case Integer:
-                return target.processBinaryOp(expr, Integer.class, Integer.class, (a, b) -> a | b);
-            case Long:
-                return target.processBinaryOp(expr, Long.class, Long.class, (a, b) -> a | b);
-            default:
-            }
-            return target;
-        }
-        case And: {
-            switch (getType(expr)) {
-            case Integer:
-                return target.processBinaryOp(expr, Integer.class, Integer.class, (a, b) -> a & b);
-            case Long:
-                return target.processBinaryOp(expr, Long.class, Long.class, (a, b) -> a & b);
-            default:
-            }
-            return target;
-        }
-        case Shl: {
-            switch (getType(expr)) {
-            case Integer:
-                return target.processBinaryOp(expr, Integer.class, Integer.class, (a, b) -> a << b);
-            case Long:
-                return target.processBinaryOp(expr, Long.class, Integer.class, (a, b) -> a << b);
-            default:
-            }
-            return target;
-        }
-        case Shr: {
-            switch (getType(expr)) {
-            case Integer:
-                return target.processBinaryOp(expr, Integer.class, Integer.class, (a, b) -> a >> b);
-            case Long:
-                return target.processBinaryOp(expr, Long.class, Integer.class, (a, b) -> a >> b);
-            default:
-            }
-            return target;
-        }
-        case UShr: {
-            switch (getType(expr)) {
-            case Integer:
-                return target.processBinaryOp(expr, Integer.class, Integer.class, (a, b) -> a >>> b);
-            case Long:
-                return target.processBinaryOp(expr, Long.class, Integer.class, (a, b) -> a >>> b);
-            default:
-            }
-            return target;
-        }
+        case Xor:
+        case Or:
+        case And:
+        case Shl:
+        case Shr:
+        case UShr:
+            return target.processBinaryOp(expr, getType(expr));
         case I2L:
-            return target.processUnaryOp(expr, Integer.class, i -> (long) i);
         case I2B:
-            return target.processUnaryOp(expr, Integer.class, i -> (int) (byte) (int) i);
         case I2C:
-            return target.processUnaryOp(expr, Integer.class, i -> (int) (char) (int) i);
         case I2S:
-            return target.processUnaryOp(expr, Integer.class, i -> (int) (short) (int) i);
         case I2D:
-            return target.processUnaryOp(expr, Integer.class, i -> (double) i);
         case I2F:
-            return target.processUnaryOp(expr, Integer.class, i -> (float) i);
         case L2I:
-            return target.processUnaryOp(expr, Long.class, l -> (int) (long) l);
         case L2D:
-            return target.processUnaryOp(expr, Long.class, l -> (double) l);
         case L2F:
-            return target.processUnaryOp(expr, Long.class, l -> (float) l);
         case F2L:
-            return target.processUnaryOp(expr, Float.class, l -> (long) (float) l);
         case F2I:
-            return target.processUnaryOp(expr, Float.class, l -> (int) (float) l);
         case F2D:
-            return target.processUnaryOp(expr, Float.class, l -> (double) l);
         case D2F:
-            return target.processUnaryOp(expr, Double.class, l -> (float) (double) l);
         case D2I:
-            return target.processUnaryOp(expr, Double.class, l -> (int) (double) l);
         case D2L:
-            return target.processUnaryOp(expr, Double.class, l -> (long) (double) l);
         case Neg:
-            return processNeg(expr, target);
+            return target.processUnaryOp(expr, getType(expr));
         case Load: {
             Variable var = ((Variable) expr.getOperand());
             // TODO: support transferring variables from outer method to lambda
@@ -299,10 +222,10 @@ class Frame {
         }
         Set<Expression> set = source.getUserData(ValuesFlow.BACK_LINKS_KEY);
         if (set == null) {
-            set = new HashSet<>();
+            set = new LinkedHashSet<>();
             source.putUserData(ValuesFlow.BACK_LINKS_KEY, set);
         } else if (!(set instanceof HashSet)) {
-            set = new HashSet<>(set);
+            set = new LinkedHashSet<>(set);
             source.putUserData(ValuesFlow.BACK_LINKS_KEY, set);
         }
         set.add(target);
@@ -319,30 +242,19 @@ class Frame {
     }
 
     Frame merge(Frame other) {
-        Map<Variable, Expression> res = null;
-        for (Entry<Variable, Expression> e : sources.entrySet()) {
-            Expression left = e.getValue();
-            Expression right = other.get(e.getKey());
+        SourceMap res = sources.merge(other.sources, (var, left, right) -> {
+            if (left == null)
+                return makePhiNode(right, initial.get(var.getOriginalParameter()));
+            if (right == null)
+                right = initial.get(var.getOriginalParameter());
             if (right == null || right == left)
-                continue;
-            if (left != null && left.getCode() == AstCode.LdC && right.getCode() == AstCode.LdC
+                return left;
+            if (left.getCode() == AstCode.LdC && right.getCode() == AstCode.LdC
                 && Objects.equals(left.getOperand(), right.getOperand()))
-                continue;
-            Expression phi = makePhiNode(left, right);
-            if (phi == left)
-                continue;
-            if (res == null)
-                res = new IdentityHashMap<>(sources);
-            res.put(e.getKey(), phi);
-        }
-        for(Entry<Variable, Expression> e : other.sources.entrySet()) {
-            if(!sources.containsKey(e.getKey())) {
-                if (res == null)
-                    res = new IdentityHashMap<>(sources);
-                res.put(e.getKey(), makePhiNode(e.getValue(), initial.get(e.getKey().getOriginalParameter())));
-            }
-        }
-        return res == null ? this : new Frame(this, res);
+                return left;
+            return makePhiNode(left, right);
+        });
+        return res == sources ? this : new Frame(this, res);
     }
 
     static Frame merge(Frame left, Frame right) {
@@ -353,6 +265,51 @@ class Frame {
         return left.merge(right);
     }
 
+    /**
+     * Widening step for the loop fixpoint: the sources which differ between the frames are joined and the update
+     * nodes of the same field or array element are collapsed into the one already present in the previous frame, so
+     * the repeated traversals stop producing new sources.
+     * 
+     * @param prev frame at the start of the previous loop iteration
+     * @param next frame at the start of the next loop iteration
+     * @return widened next frame
+     */
+    static Frame widen(Frame prev, Frame next) {
+        if (prev == null || next == null || prev == next)
+            return next;
+        SourceMap res = next.sources.merge(prev.sources, (var, cur, old) -> cur == null || old == null
+            || isEqual(cur, old) ? cur : next.makeWidenedNode(old, cur));
+        return res == next.sources ? next : new Frame(next, res);
+    }
+
+    private Expression makeWidenedNode(Expression old, Expression cur) {
+        List<Expression> children = new ArrayList<>();
+        if (old.getCode() == PHI_TYPE)
+            children.addAll(old.getArguments());
+        else
+            children.add(old);
+        int baseSize = children.size();
+        for (Expression arg : cur.getCode() == PHI_TYPE ? cur.getArguments() : Collections.singletonList(cur)) {
+            if (!children.contains(arg) && (arg.getCode() != UPDATE_TYPE || children.stream().noneMatch(
+                child -> child.getCode() == UPDATE_TYPE && child.getArguments().get(0) == arg.getArguments().get(0))))
+                children.add(arg);
+        }
+        if (children.size() == baseSize)
+            return old;
+        Expression phi = new Expression(PHI_TYPE, null, 0, children);
+        Object value = children.get(0).getUserData(ValuesFlow.VALUE_KEY);
+        boolean hasValue = false;
+        for (Expression child : children) {
+            Object childValue = child.getUserData(ValuesFlow.VALUE_KEY);
+            hasValue |= childValue != null;
+            if (!Objects.equals(value, childValue))
+                value = UNKNOWN_VALUE;
+        }
+        if (hasValue)
+            storeValue(phi, value);
+        return phi;
+    }
+
     private static boolean isEqual(Expression left, Expression right) {
         if (left == right)
             return true;
@@ -377,18 +334,10 @@ class Frame {
             return true;
         if (left == null || right == null)
             return false;
-        Map<Variable, Expression> l = left.sources;
-        Map<Variable, Expression> r = right.sources;
-        if(l.size() != r.size())
-            return false;
-        for(Entry<Variable, Expression> e : l.entrySet()) {
-            if(!isEqual(e.getValue(), r.get(e.getKey())))
-                return false;
-        }
-        return true;
+        return left.sources.isEqual(right.sources, Frame::isEqual);
     }
 
-    private Frame(Frame parent, Map<Variable, Expression> sources) {
+    private Frame(Frame parent, SourceMap sources) {
         this.md = parent.md;
         this.initial = parent.initial;
         this.sources = sources;
@@ -397,24 +346,54 @@ class Frame {
     private Frame replace(Variable var, Expression replacement) {
         Expression expression = get(var);
         if (expression != replacement) {
-            Map<Variable, Expression> res = new IdentityHashMap<>(sources);
-            res.put(var, replacement);
-            return new Frame(this, res);
+            return new Frame(this, sources.put(var, replacement));
         }
         return this;
     }
 
     private Frame replaceAll(UnaryOperator<Expression> op) {
-        Map<Variable, Expression> res = null;
-        for (Entry<Variable, Expression> e : sources.entrySet()) {
-            Expression expr = op.apply(e.getValue());
-            if (expr != e.getValue()) {
-                if (res == null)
-                    res = new IdentityHashMap<>(sources);
-                res.put(e.getKey(), expr);
-            }
+        SourceMap res = sources.replaceAll(op);
+        return res == sources ? this : new Frame(this, res);
+    }
+
+    private Frame processBinaryOp(Expression expr, JvmType type) {
+        Class<?> leftType = ConstantFolder.getOperandType(expr.getCode(), type);
+        if (leftType == null || expr.getArguments().size() != 2)
+            return this;
+        Object left = expr.getArguments().get(0).getUserData(ValuesFlow.VALUE_KEY);
+        if (left == UNKNOWN_VALUE) {
+            storeValue(expr, left);
+            return this;
         }
-        return res == null ? this : new Frame(this, res);
+        if (left == null || left.getClass() != leftType)
+            return this;
+        Class<?> rightType = ConstantFolder.isShift(expr.getCode()) ? Integer.class : leftType;
+        Object right = expr.getArguments().get(1).getUserData(ValuesFlow.VALUE_KEY);
+        if (right == UNKNOWN_VALUE) {
+            storeValue(expr, right);
+            return this;
+        }
+        if (right == null || right.getClass() != rightType)
+            return this;
+        Object result = ConstantFolder.fold(expr.getCode(), left, right);
+        storeValue(expr, result == null ? UNKNOWN_VALUE : result);
+        return this;
+    }
+
+    private Frame processUnaryOp(Expression expr, JvmType type) {
+        Class<?> argType = ConstantFolder.getOperandType(expr.getCode(), type);
+        if (argType == null || expr.getArguments().size() != 1)
+            return this;
+        Object arg = expr.getArguments().get(0).getUserData(ValuesFlow.VALUE_KEY);
+        if (arg == UNKNOWN_VALUE) {
+            storeValue(expr, arg);
+            return this;
+        }
+        if (!argType.isInstance(arg))
+            return this;
+        Object result = ConstantFolder.fold(expr.getCode(), arg);
+        storeValue(expr, result == null ? UNKNOWN_VALUE : result);
+        return this;
     }
 
     private <A, B> Frame processBinaryOp(Expression expr, Class<A> leftType, Class<B> rightType, BiFunction<A, B, ?> op) {
@@ -494,192 +473,6 @@ class Frame {
         return type == null ? JvmType.Void : type.getSimpleType();
     }
 
-    private Frame processNeg(Expression expr, Frame target) {
-        switch (getType(expr)) {
-        case Integer:
-            return target.processUnaryOp(expr, Integer.class, l -> -l);
-        case Long:
-            return target.processUnaryOp(expr, Long.class, l -> -l);
-        case Double:
-            return target.processUnaryOp(expr, Double.class, l -> -l);
-        case Float:
-            return target.processUnaryOp(expr, Float.class, l -> -l);
-        default:
-        }
-        return target;
-    }
-
-    private Frame processRem(Expression expr, Frame target) {
-        switch (getType(expr)) {
-        case Integer:
-            return target.processBinaryOp(expr, Integer.class, Integer.class, (a, b) -> a % b);
-        case Long:
-            return target.processBinaryOp(expr, Long.class, Long.class, (a, b) -> a % b);
-        case Double:
-            return target.processBinaryOp(expr, Double.class, Double.class, (a, b) -> a % b);
-        case Float:
-            return target.processBinaryOp(expr, Float.class, Float.class, (a, b) -> a % b);
-        default:
-        }
-        return target;
-    }
-
-    private Frame processDiv(Expression expr, Frame target) {
-        switch (getType(expr)) {
-        case Integer:
-            return target.processBinaryOp(expr, Integer.class, Integer.class, (a, b) -> a / b);
-        case Long:
-            return target.processBinaryOp(expr, Long.class, Long.class, (a, b) -> a / b);
-        case Double:
-            return target.processBinaryOp(expr, Double.class, Double.class, (a, b) -> a / b);
-        case Float:
-            return target.processBinaryOp(expr, Float.class, Float.class, (a, b) -> a / b);
-        default:
-        }
-        return target;
-    }
-
-    private Frame processMul(Expression expr, Frame target) {
-        switch (getType(expr)) {
-        case Integer:
-            return target.processBinaryOp(expr, Integer.class, Integer.class, (a, b) -> a * b);
-        case Long:
-            return target.processBinaryOp(expr, Long.class, Long.class, (a, b) -> a * b);
-        case Double:
-            return target.processBinaryOp(expr, Double.class, Double.class, (a, b) -> a * b);
-        case Float:
-            return target.processBinaryOp(expr, Float.class, Float.class, (a, b) -> a * b);
-        default:
-        }
-        return target;
-    }
-
-    private Frame processSub(Expression expr, Frame target) {
-        switch (getType(expr)) {
-        case Integer:
-            return target.processBinaryOp(expr, Integer.class, Integer.class, (a, b) -> a - b);
-        case Long:
-            return target.processBinaryOp(expr, Long.class, Long.class, (a, b) -> a - b);
-        case Double:
-            return target.processBinaryOp(expr, Double.class, Double.class, (a, b) -> a - b);
-        case Float:
-            return target.processBinaryOp(expr, Float.class, Float.class, (a, b) -> a - b);
-        default:
-        }
-        return target;
-    }
-
-    private Frame processAdd(Expression expr, Frame target) {
-        switch (getType(expr)) {
-        case Integer:
-            return target.processBinaryOp(expr, Integer.class, Integer.class, Integer::sum);
-        case Long:
-            return target.processBinaryOp(expr, Long.class, Long.class, Long::sum);
-        case Double:
-            return target.processBinaryOp(expr, Double.class, Double.class, Double::sum);
-        case Float:
-            return target.processBinaryOp(expr, Float.class, Float.class, Float::sum);
-        default:
-        }
-        return target;
-    }
-
-    private Frame processCmpGe(Expression expr, Frame target) {
-        switch (getType(expr.getArguments().get(0))) {
-        case Integer:
-            return target.processBinaryOp(expr, Integer.class, Integer.class, (a, b) -> a.intValue() >= b.intValue());
-        case Long:
-            return target.processBinaryOp(expr, Long.class, Long.class, (a, b) -> a.longValue() >= b.longValue());
-        case Double:
-            return target.processBinaryOp(expr, Double.class, Double.class, (a, b) -> a.doubleValue() >= b
-                    .doubleValue());
-        case Float:
-            return target.processBinaryOp(expr, Float.class, Float.class, (a, b) -> a.floatValue() >= b.floatValue());
-        default:
-        }
-        return target;
-    }
-
-    private Frame processCmpGt(Expression expr, Frame target) {
-        switch (getType(expr.getArguments().get(0))) {
-        case Integer:
-            return target.processBinaryOp(expr, Integer.class, Integer.class, (a, b) -> a.intValue() > b.intValue());
-        case Long:
-            return target.processBinaryOp(expr, Long.class, Long.class, (a, b) -> a.longValue() > b.longValue());
-        case Double:
-            return target
-                    .processBinaryOp(expr, Double.class, Double.class, (a, b) -> a.doubleValue() > b.doubleValue());
-        case Float:
-            return target.processBinaryOp(expr, Float.class, Float.class, (a, b) -> a.floatValue() > b.floatValue());
-        default:
-        }
-        return target;
-    }
-
-    private Frame processCmpLe(Expression expr, Frame target) {
-        switch (getType(expr.getArguments().get(0))) {
-        case Integer:
-            return target.processBinaryOp(expr, Integer.class, Integer.class, (a, b) -> a.intValue() <= b.intValue());
-        case Long:
-            return target.processBinaryOp(expr, Long.class, Long.class, (a, b) -> a.longValue() <= b.longValue());
-        case Double:
-            return target.processBinaryOp(expr, Double.class, Double.class, (a, b) -> a.doubleValue() <= b
-                    .doubleValue());
-        case Float:
-            return target.processBinaryOp(expr, Float.class, Float.class, (a, b) -> a.floatValue() <= b.floatValue());
-        default:
-        }
-        return target;
-    }
-
-    private Frame processCmpLt(Expression expr, Frame target) {
-        switch (getType(expr.getArguments().get(0))) {
-        case Integer:
-            return target.processBinaryOp(expr, Integer.class, Integer.class, (a, b) -> a.intValue() < b.intValue());
-        case Long:
-            return target.processBinaryOp(expr, Long.class, Long.class, (a, b) -> a.longValue() < b.longValue());
-        case Double:
-            return target
-                    .processBinaryOp(expr, Double.class, Double.class, (a, b) -> a.doubleValue() < b.doubleValue());
-        case Float:
-            return target.processBinaryOp(expr, Float.class, Float.class, (a, b) -> a.floatValue() < b.floatValue());
-        default:
-        }
-        return target;
-    }
-
-    private Frame processCmpNe(Expression expr, Frame target) {
-        switch (getType(expr.getArguments().get(0))) {
-        case Integer:
-            return target.processBinaryOp(expr, Integer.class, Integer.class, (a, b) -> a.intValue() != b.intValue());
-        case Long:
-            return target.processBinaryOp(expr, Long.class, Long.class, (a, b) -> a.longValue() != b.longValue());
-        case Double:
-            return target.processBinaryOp(expr, Double.class, Double.class, (a, b) -> a.doubleValue() != b
-                    .doubleValue());
-        case Float:
-            return target.processBinaryOp(expr, Float.class, Float.class, (a, b) -> a.floatValue() != b.floatValue());
-        default:
-        }
-        return target;
-    }
-
-    private Frame processCmpEq(Expression expr, Frame target) {
-        switch (getType(expr.getArguments().get(0))) {
-        case Integer:
-            return target.processBinaryOp(expr, Integer.class, Integer.class, (a, b) -> a.intValue() == b.intValue());
-        case Long:
-            return target.processBinaryOp(expr, Long.class, Long.class, (a, b) -> a.longValue() == b.longValue());
-        case Double:
-            return target.processBinaryOp(expr, Double.class, Double.class, (a, b) -> a.doubleValue() == b
-                    .doubleValue());
-        case Float:
-            return target.processBinaryOp(expr, Float.class, Float.class, (a, b) -> a.floatValue() == b.floatValue());
-        default:
-        }
-        return target;
-    }
-
     private Expression makePhiNode(Expression left, Expression right) {
         if (left == null)
             return right;
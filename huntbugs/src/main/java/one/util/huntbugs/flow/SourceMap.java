@@ -0,0 +1,237 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.flow;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.UnaryOperator;
+
+import com.strobel.decompiler.ast.Expression;
+import com.strobel.decompiler.ast.Variable;
+
+/**
+ * Persistent map from the method variables to their sources. Variables are densely numbered (the numbering is shared
+ * by all the maps derived from the same empty map) and stored in the bit-partitioned trie, so updates copy only the
+ * path to the changed leaf and unchanged subtrees are shared between the maps and skipped by merge and comparison.
+ * 
+ * @author lan
+ *
+ */
+final class SourceMap {
+    private static final int BITS = 4;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    @FunctionalInterface
+    interface Merger {
+        /**
+         * @param var variable
+         * @param left value in this map (may be null)
+         * @param right value in the other map (may be null)
+         * @return new value for this map (must be non-null if left is non-null)
+         */
+        Expression merge(Variable var, Expression left, Expression right);
+    }
+
+    private static class Index {
+        final Map<Variable, Integer> numbers = new IdentityHashMap<>();
+        final List<Variable> variables = new ArrayList<>();
+
+        int getOrAdd(Variable var) {
+            Integer number = numbers.get(var);
+            if (number == null) {
+                number = variables.size();
+                numbers.put(var, number);
+                variables.add(var);
+            }
+            return number;
+        }
+    }
+
+    private final Index index;
+    private final Object[] root;
+    private final int shift;
+    private final int size;
+
+    SourceMap() {
+        this(new Index(), null, 0, 0);
+    }
+
+    private SourceMap(Index index, Object[] root, int shift, int size) {
+        this.index = index;
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Expression get(Variable var) {
+        Integer number = index.numbers.get(var);
+        if (number == null)
+            return null;
+        int idx = number;
+        if ((idx >>> shift) >= WIDTH)
+            return null;
+        Object[] node = root;
+        for (int level = shift; node != null; level -= BITS) {
+            Object child = node[(idx >>> level) & MASK];
+            if (level == 0)
+                return (Expression) child;
+            node = (Object[]) child;
+        }
+        return null;
+    }
+
+    SourceMap put(Variable var, Expression value) {
+        int idx = index.getOrAdd(var);
+        int newShift = shift;
+        while ((idx >>> newShift) >= WIDTH)
+            newShift += BITS;
+        Object[] newRoot = grow(newShift);
+        boolean[] added = { false };
+        newRoot = put(newRoot, newShift, idx, value, added);
+        return new SourceMap(index, newRoot, newShift, added[0] ? size + 1 : size);
+    }
+
+    private static Object[] put(Object[] node, int level, int idx, Expression value, boolean[] added) {
+        Object[] result = node == null ? new Object[WIDTH] : node.clone();
+        int i = (idx >>> level) & MASK;
+        if (level == 0) {
+            added[0] = result[i] == null;
+            result[i] = value;
+        } else {
+            result[i] = put((Object[]) result[i], level - BITS, idx, value, added);
+        }
+        return result;
+    }
+
+    /**
+     * @param op operator to apply to every value
+     * @return map with updated values or this if operator returned the same values
+     */
+    SourceMap replaceAll(UnaryOperator<Expression> op) {
+        Object[] newRoot = replaceAll(root, shift, op);
+        return newRoot == root ? this : new SourceMap(index, newRoot, shift, size);
+    }
+
+    private static Object[] replaceAll(Object[] node, int level, UnaryOperator<Expression> op) {
+        if (node == null)
+            return null;
+        Object[] result = node;
+        for (int i = 0; i < WIDTH; i++) {
+            Object child = node[i];
+            if (child == null)
+                continue;
+            Object newChild = level == 0 ? op.apply((Expression) child) : replaceAll((Object[]) child, level - BITS,
+                op);
+            if (newChild != child) {
+                if (result == node)
+                    result = node.clone();
+                result[i] = newChild;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Merges other map into this one. Merger is called for every variable which has different values in these maps.
+     * 
+     * @param other map derived from the same empty map
+     * @param merger function to calculate the resulting values
+     * @return merged map or this if nothing was changed
+     */
+    SourceMap merge(SourceMap other, Merger merger) {
+        if (root == other.root)
+            return this;
+        int newShift = Math.max(shift, other.shift);
+        Object[] left = grow(newShift);
+        int[] added = { 0 };
+        Object[] newRoot = merge(left, other.grow(newShift), newShift, 0, merger, added);
+        return newRoot == left ? this : new SourceMap(index, newRoot, newShift, size + added[0]);
+    }
+
+    private Object[] merge(Object[] left, Object[] right, int level, int offset, Merger merger, int[] added) {
+        if (left == right)
+            return left;
+        Object[] result = left;
+        for (int i = 0; i < WIDTH; i++) {
+            Object l = left == null ? null : left[i];
+            Object r = right == null ? null : right[i];
+            if (l == r)
+                continue;
+            Object res;
+            if (level == 0) {
+                res = merger.merge(index.variables.get(offset + i), (Expression) l, (Expression) r);
+                if (l == null && res != null)
+                    added[0]++;
+            } else {
+                res = merge((Object[]) l, (Object[]) r, level - BITS, offset + (i << level), merger, added);
+            }
+            if (res != l) {
+                if (result == left)
+                    result = left == null ? new Object[WIDTH] : left.clone();
+                result[i] = res;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param other map derived from the same empty map
+     * @param equality predicate to compare the values
+     * @return true if both maps have the same set of variables and values are equal according to the predicate
+     */
+    boolean isEqual(SourceMap other, BiPredicate<Expression, Expression> equality) {
+        if (size != other.size)
+            return false;
+        int newShift = Math.max(shift, other.shift);
+        return isEqual(grow(newShift), other.grow(newShift), newShift, equality);
+    }
+
+    private static boolean isEqual(Object[] left, Object[] right, int level, BiPredicate<Expression, Expression> equality) {
+        if (left == right)
+            return true;
+        if (left == null || right == null)
+            return false;
+        for (int i = 0; i < WIDTH; i++) {
+            Object l = left[i];
+            Object r = right[i];
+            if (level == 0) {
+                if (l != r && (l == null || r == null || !equality.test((Expression) l, (Expression) r)))
+                    return false;
+            } else if (!isEqual((Object[]) l, (Object[]) r, level - BITS, equality)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Object[] grow(int newShift) {
+        Object[] node = root;
+        for (int level = shift; level < newShift && node != null; level += BITS) {
+            Object[] parent = new Object[WIDTH];
+            parent[0] = node;
+            node = parent;
+        }
+        return node;
+    }
+}
@@ -185,6 +185,8 @@ public class ValuesFlow {
                             loopEnd = Frame.merge(loopBody.breakFrame, loopEnd);
                             Frame newLoopStart = Frame.merge(loopBody.passFrame, loopBody.continueFrame);
                             newLoopStart = Frame.merge(loopStart, newLoopStart);
+                            if(iter >= ctx.getOptions().loopWideningIterations)
+                                newLoopStart = Frame.widen(loopStart, newLoopStart);
                             if(Frame.isEqual(loopStart, newLoopStart))
                                 break;
                             loopStart = newLoopStart;
@@ -215,6 +217,8 @@ public class ValuesFlow {
                                 Frame newLoopEnd = newLoopStart == null ? null : newLoopStart.process(loop.getCondition());
                                 newLoopEnd = Frame.merge(loopBody.breakFrame, newLoopEnd);
                                 newLoopEnd = Frame.merge(loopEnd, newLoopEnd);
+                                if(iter >= ctx.getOptions().loopWideningIterations)
+                                    newLoopEnd = Frame.widen(loopEnd, newLoopEnd);
                                 if(Frame.isEqual(loopEnd, newLoopEnd))
                                     break;
                                 loopEnd = newLoopEnd;
@@ -243,6 +247,8 @@ public class ValuesFlow {
                                 Frame beforeCondition = Frame.merge(loopBody.passFrame, loopBody.continueFrame);
                                 Frame newLoopEnd = beforeCondition == null ? null : beforeCondition.process(loop.getCondition());
                                 newLoopEnd = Frame.merge(loopEnd, newLoopEnd);
+                                if(iter >= ctx.getOptions().loopWideningIterations)
+                                    newLoopEnd = Frame.widen(loopEnd, newLoopEnd);
                                 loopStart = newLoopEnd;
                                 newLoopEnd = Frame.merge(loopBody.breakFrame, newLoopEnd);
                                 if(Frame.isEqual(loopEnd, newLoopEnd))
@@ -17,7 +17,7 @@ package one.util.huntbugs.output;
 
 import java.util.List;
 
-import org.w3c.dom.Document;
+import one.util.huntbugs.analysis.Context;
 
 /**
  * @author isopov
@@ -32,8 +32,8 @@ class CombinedReportWriter implements ReportWriter {
     }
 
     @Override
-    public void write(Document dom) {
-        writers.forEach(writer -> writer.write(dom));
+    public void write(Context ctx) {
+        writers.forEach(writer -> writer.write(ctx));
     }
 
 }
@@ -16,48 +16,325 @@
 package one.util.huntbugs.output;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.io.Writer;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.TransformerFactoryConfigurationError;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import org.w3c.dom.Document;
+import one.util.huntbugs.analysis.Context;
+import one.util.huntbugs.analysis.ErrorMessage;
+import one.util.huntbugs.warning.Formatter;
+import one.util.huntbugs.warning.Warning;
+import one.util.huntbugs.warning.WarningAnnotation;
+import one.util.huntbugs.warning.WarningAnnotation.Location;
+import one.util.huntbugs.warning.WarningAnnotation.MemberInfo;
+import one.util.huntbugs.warning.WarningAnnotation.TypeInfo;
+import one.util.huntbugs.warning.WarningType;
 
 /**
+ * Writes the HTML report without XSLT. The target file contains the errors and the summary of warnings per category.
+ * The warnings of every category are written to the separate pages next to the target file, at most
+ * {@value #PAGE_SIZE} warnings per page. Long descriptions are written once per warning type and page as inert
+ * templates: the warning rows keep only the formatted values, and the description is built by the script when the
+ * details are expanded.
+ * 
  * @author lan
  *
  */
 class HtmlReportWriter implements ReportWriter {
-    private static final String XSL_PATH = "huntbugs/report.xsl";
-    private final Writer target;
+    static final int PAGE_SIZE = 1000;
 
-    public HtmlReportWriter(Writer target) {
-        this.target = target;
+    private static final String CSS = String.join("\n",
+        "body { font-family: verdana, helvetica, sans-serif; }",
+        "br { margin: 1em; }",
+        "code { font-size: 140%; }",
+        "span.WarningType { font-size: 70%; color: gray; }",
+        "code.Member { border-bottom: 1px gray dotted; }",
+        ".AnotherLocation { color: gray; }",
+        "table.Warnings, table.Errors { border-collapse: collapse; margin: 3pt; }",
+        "table.Warnings, table.Warnings > tbody > tr > td { border: 1px solid blue; padding: 3pt; }",
+        "table.Errors thead { background-color: red; color: white; }",
+        "table.Errors, table.Errors > tbody > tr > td { border: 1px solid red; padding: 3pt; }",
+        "table.Errors > tbody > tr > td { vertical-align: top; }",
+        ".Title { font-weight: bold; }",
+        "td.Description { background-color: yellow; height: 10pt; vertical-align: top; }",
+        "table.Properties th { text-align: right; font-weight: normal; font-size: 80%; color: #444; }",
+        "summary { cursor: pointer; color: #444; }");
+
+    // Substitutes the values into the long description template when the details are expanded for the first time
+    private static final String SCRIPT = String.join("\n",
+        "document.addEventListener('toggle', function(e) {",
+        "  var d = e.target;",
+        "  if (d.tagName !== 'DETAILS' || !d.open || d.hasAttribute('data-loaded')) return;",
+        "  var values = JSON.parse(d.getAttribute('data-values'));",
+        "  var template = document.getElementById('LongDescription-' + d.getAttribute('data-type')).innerHTML;",
+        "  d.lastElementChild.innerHTML = template.replace(/\\$([^$]*)\\$/g, function(m, key) { return values[key]; });",
+        "  d.setAttribute('data-loaded', '');",
+        "}, true);");
+
+    private final Path target;
+
+    private static class Page implements AutoCloseable {
+        final Path path;
+        final Writer out;
+        final Set<WarningType> types = new LinkedHashSet<>();
+        int count;
+
+        Page(Path path, String title) throws IOException {
+            this.path = path;
+            this.out = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+            writeHeader(out, title);
+        }
+
+        void finish(Formatter formatter, Path next) throws IOException {
+            out.write("</tbody></table>\n");
+            if (next != null)
+                out.write("<p><a href=\"" + escape(next.getFileName().toString()) + "\">Next page</a></p>\n");
+            for (WarningType type : types) {
+                out.write("<template id=\"LongDescription-" + escape(type.getName()) + "\">"
+                    + formatter.getLongDescriptionTemplate(type) + "</template>\n");
+            }
+            out.write("<script>\n" + SCRIPT + "\n</script>\n");
+            writeFooter(out);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static class Category {
+        // Makes the page names unique, as different categories may look the same after the sanitizing
+        final int index;
+        final List<Path> pages = new ArrayList<>();
+        Page current;
+        int count, maxScore;
+
+        Category(int index) {
+            this.index = index;
+        }
+    }
 
+    public HtmlReportWriter(Path target) {
+        this.target = target;
     }
 
     @Override
-    public void write(Document dom) {
+    public void write(Context ctx) {
+        Map<String, Category> categories = new TreeMap<>();
         try {
-            try (InputStream is = HtmlReportWriter.class.getClassLoader().getResourceAsStream(XSL_PATH)) {
-                StreamSource xsl = new StreamSource(is);
-                Transformer transformer = TransformerFactory.newInstance().newTransformer(xsl);
-                transformer.setOutputProperty(javax.xml.transform.OutputKeys.INDENT, "yes");
-                transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-                StreamResult result = new StreamResult(target);
-                transformer.transform(new DOMSource(dom), result);
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
+            Formatter formatter = new Formatter(ctx.getMessages());
+            try {
+                try (Stream<Warning> warnings = ctx.warnings()) {
+                    for (Warning w : (Iterable<Warning>) warnings::iterator) {
+                        String name = w.getType().getCategory();
+                        Category category = categories.computeIfAbsent(name, k -> new Category(categories.size() + 1));
+                        if (category.current == null || category.current.count == PAGE_SIZE) {
+                            Path path = getPagePath(name, category.index, category.pages.size() + 1);
+                            if (category.current != null) {
+                                category.current.finish(formatter, path);
+                                category.current.close();
+                            }
+                            category.pages.add(path);
+                            category.current = openPage(path, name, category.pages);
+                        }
+                        category.count++;
+                        category.maxScore = Math.max(category.maxScore, w.getScore());
+                        category.current.count++;
+                        category.current.types.add(w.getType());
+                        writeWarning(category.current.out, w, formatter);
+                    }
+                }
+                for (Category category : categories.values()) {
+                    category.current.finish(formatter, null);
+                }
+            } finally {
+                for (Category category : categories.values()) {
+                    category.current.close();
+                }
             }
-        } catch (TransformerFactoryConfigurationError | TransformerException e) {
-            throw new RuntimeException(e);
+            try (Writer out = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+                writeHeader(out, "HuntBugs report");
+                List<ErrorMessage> errors = ctx.errors().collect(Collectors.toList());
+                if (!errors.isEmpty()) {
+                    out.write("<table class=\"Errors\"><thead><tr><th colspan=\"2\">Errors (" + errors.size()
+                        + ")</th></tr></thead><tbody>\n");
+                    for (ErrorMessage error : errors)
+                        writeError(out, error);
+                    out.write("</tbody></table>\n");
+                }
+                out.write("<table class=\"Warnings\"><thead><tr><th colspan=\"4\">Warnings ("
+                    + categories.values().stream().mapToInt(c -> c.count).sum() + ")</th></tr>"
+                    + "<tr><th>Category</th><th>Warnings</th><th>Max score</th><th>Pages</th></tr></thead><tbody>\n");
+                for (Map.Entry<String, Category> e : categories.entrySet()) {
+                    Category category = e.getValue();
+                    out.write("<tr><td><a href=\"" + escape(category.pages.get(0).getFileName().toString()) + "\">"
+                        + escape(e.getKey()) + "</a></td><td>" + category.count + "</td><td>" + category.maxScore
+                        + "</td><td>");
+                    for (int i = 0; i < category.pages.size(); i++) {
+                        out.write((i == 0 ? "" : " ") + "<a href=\""
+                            + escape(category.pages.get(i).getFileName().toString()) + "\">" + (i + 1) + "</a>");
+                    }
+                    out.write("</td></tr>\n");
+                }
+                out.write("</tbody></table>\n");
+                writeFooter(out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Page openPage(Path path, String category, List<Path> pages) throws IOException {
+        int number = pages.size();
+        Page page = new Page(path, "HuntBugs report: " + category + (number == 1 ? "" : " (page " + number + ")"));
+        page.out.write("<p><a href=\"" + escape(target.getFileName().toString()) + "\">Back to summary</a>");
+        if (number > 1) {
+            page.out.write(" | <a href=\"" + escape(pages.get(number - 2).getFileName().toString())
+                + "\">Previous page</a>");
         }
+        page.out.write("</p>\n<table class=\"Warnings\"><tbody>\n");
+        return page;
+    }
+
+    private Path getPagePath(String category, int index, int number) {
+        String name = target.getFileName().toString();
+        if (name.endsWith(".html"))
+            name = name.substring(0, name.length() - ".html".length());
+        return target.resolveSibling(name + "-" + index + "-" + category.replaceAll("[^A-Za-z0-9_-]", "_")
+            + (number == 1 ? "" : "-" + number) + ".html");
     }
 
+    private static void writeHeader(Writer out, String title) throws IOException {
+        out.write("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"UTF-8\">\n<title>" + escape(title)
+            + "</title>\n<style>\n" + CSS + "\n</style>\n</head>\n<body>\n<h1>" + escape(title) + "</h1>\n");
+    }
+
+    private static void writeFooter(Writer out) throws IOException {
+        out.write("</body>\n</html>\n");
+    }
+
+    private static void writeError(Writer out, ErrorMessage e) throws IOException {
+        out.write("<tr><td><table class=\"Properties\">");
+        writeProperty(out, "Class", e.getClassName());
+        writeProperty(out, "Member", e.getElementName());
+        writeProperty(out, "Detector", e.getDetector());
+        out.write("</table></td><td><pre>" + escape(e.getError()) + "</pre></td></tr>\n");
+    }
+
+    private static void writeProperty(Writer out, String name, String value) throws IOException {
+        if (value != null)
+            out.write("<tr><th>" + name + ":</th><td>" + escape(value) + "</td></tr>");
+    }
+
+    private static void writeWarning(Writer out, Warning w, Formatter formatter) throws IOException {
+        String className = null, sourceFile = null, method = null;
+        Location location = null;
+        List<Location> anotherLocations = new ArrayList<>();
+        for (WarningAnnotation<?> anno : (Iterable<WarningAnnotation<?>>) w.annotations()::iterator) {
+            switch (anno.getRole()) {
+            case "TYPE":
+                className = ((TypeInfo) anno.getValue()).getTypeName();
+                break;
+            case "FILE":
+                sourceFile = formatter.formatValue(anno.getValue(), Formatter.FORMAT_PLAIN);
+                break;
+            case "LOCATION":
+                location = (Location) anno.getValue();
+                break;
+            case "ANOTHER_INSTANCE":
+                anotherLocations.add((Location) anno.getValue());
+                break;
+            case "METHOD":
+                method = ((MemberInfo) anno.getValue()).getName();
+                break;
+            default:
+            }
+        }
+        out.write("<tr><td rowspan=\"2\"><div class=\"Title\">" + escape(formatter.getTitle(w))
+            + "<br><span class=\"WarningType\">(" + escape(w.getType().getName()) + ")</span></div>"
+            + "<table class=\"Properties\">");
+        writeProperty(out, "Category", w.getType().getCategory());
+        writeProperty(out, "Score", String.valueOf(w.getScore()));
+        if (location != null) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(escape(sourceFile == null ? "" : sourceFile)).append(':');
+            if (location.getSourceLine() != -1)
+                sb.append(location.getSourceLine());
+            for (Location anotherLocation : anotherLocations) {
+                sb.append("<span class=\"AnotherLocation\">; ");
+                if (anotherLocation.getSourceLine() != -1)
+                    sb.append(anotherLocation.getSourceLine());
+                sb.append("</span>");
+            }
+            out.write("<tr><th>Location:</th><td>" + sb + "</td></tr>");
+        }
+        writeProperty(out, "Class", className);
+        writeProperty(out, "Method", method);
+        out.write("</table></td><td class=\"Description\"><div class=\"Description\">"
+            + escape(formatter.getDescription(w)) + "</div></td></tr>\n");
+        out.write("<tr><td><details data-type=\"" + escape(w.getType().getName()) + "\" data-values=\""
+            + escape(toJson(formatter.getLongDescriptionValues(w)))
+            + "\"><summary>Details</summary><div class=\"LongDescription\"></div></details></td></tr>\n");
+    }
+
+    private static String toJson(Map<String, String> map) {
+        StringBuilder sb = new StringBuilder("{");
+        for (Map.Entry<String, String> e : map.entrySet()) {
+            if (sb.length() > 1)
+                sb.append(',');
+            appendJson(sb, e.getKey());
+            sb.append(':');
+            appendJson(sb, e.getValue());
+        }
+        return sb.append('}').toString();
+    }
+
+    private static void appendJson(StringBuilder sb, String str) {
+        sb.append('"');
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c < ' ')
+                sb.append(String.format("\\u%04x", (int) c));
+            else
+                sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    private static String escape(String str) {
+        StringBuilder sb = new StringBuilder(str.length());
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            switch (c) {
+            case '<':
+                sb.append("&lt;");
+                break;
+            case '>':
+                sb.append("&gt;");
+                break;
+            case '&':
+                sb.append("&amp;");
+                break;
+            case '"':
+                sb.append("&quot;");
+                break;
+            default:
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
 }
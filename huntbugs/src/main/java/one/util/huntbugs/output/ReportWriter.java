@@ -15,12 +15,12 @@
  */
 package one.util.huntbugs.output;
 
-import org.w3c.dom.Document;
+import one.util.huntbugs.analysis.Context;
 
 /**
  * @author isopov
  *
  */
 interface ReportWriter {
-    void write(Document dom);
+    void write(Context ctx);
 }
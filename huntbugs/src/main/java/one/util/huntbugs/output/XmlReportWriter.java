@@ -15,40 +15,258 @@
  */
 package one.util.huntbugs.output;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.io.Writer;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.TransformerFactoryConfigurationError;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import org.w3c.dom.Document;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import one.util.huntbugs.analysis.Context;
+import one.util.huntbugs.analysis.ErrorMessage;
+import one.util.huntbugs.registry.DetectorProfile;
+import one.util.huntbugs.warning.Formatter;
+import one.util.huntbugs.warning.Warning;
+import one.util.huntbugs.warning.WarningAnnotation;
+import one.util.huntbugs.warning.WarningAnnotation.Location;
+import one.util.huntbugs.warning.WarningAnnotation.MemberInfo;
+import one.util.huntbugs.warning.WarningAnnotation.TypeInfo;
 
 /**
+ * Writes the report.xsd-conformant XML report warning by warning without building the DOM.
+ * 
  * @author lan
  *
  */
 class XmlReportWriter implements ReportWriter {
+    private static final String NL = System.lineSeparator();
+
     private final Writer target;
+    private XMLStreamWriter out;
 
     public XmlReportWriter(Writer target) {
         this.target = target;
     }
 
     @Override
-    public void write(Document dom) {
+    public void write(Context ctx) {
         try {
-            Transformer transformer = TransformerFactory.newInstance().newTransformer();
-            DOMSource source = new DOMSource(dom);
-
-            StreamResult result = new StreamResult(target);
-            transformer.setOutputProperty(javax.xml.transform.OutputKeys.MEDIA_TYPE, "text/xml");
-            transformer.setOutputProperty(javax.xml.transform.OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-            transformer.transform(source, result);
-        } catch (TransformerFactoryConfigurationError | TransformerException e) {
+            target.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>");
+            out = XMLOutputFactory.newInstance().createXMLStreamWriter(target);
+            out.writeCharacters(NL);
+            out.writeStartElement("HuntBugs");
+            boolean[] hasErrors = {false};
+            ctx.errors().forEach(e -> {
+                try {
+                    if (!hasErrors[0]) {
+                        indent(1);
+                        out.writeStartElement("ErrorList");
+                        hasErrors[0] = true;
+                    }
+                    writeError(e);
+                } catch (XMLStreamException ex) {
+                    throw new RuntimeException(ex);
+                }
+            });
+            if (hasErrors[0]) {
+                indent(1);
+                out.writeEndElement();
+            }
+            indent(1);
+            out.writeStartElement("WarningList");
+            Formatter formatter = new Formatter(ctx.getMessages());
+            boolean[] hasWarnings = {false};
+            try (Stream<Warning> warnings = ctx.warnings()) {
+                warnings.forEach(w -> {
+                    try {
+                        writeWarning(w, formatter);
+                        hasWarnings[0] = true;
+                    } catch (XMLStreamException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                });
+            }
+            if (hasWarnings[0])
+                indent(1);
+            out.writeEndElement();
+            List<DetectorProfile> profiles = ctx.getDetectorProfiles();
+            if (!profiles.isEmpty()) {
+                indent(1);
+                out.writeStartElement("DetectorList");
+                for (DetectorProfile profile : profiles)
+                    writeProfile(profile);
+                indent(1);
+                out.writeEndElement();
+            }
+            indent(0);
+            out.writeEndElement();
+            out.writeCharacters(NL);
+            out.writeEndDocument();
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (XMLStreamException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private void indent(int depth) throws XMLStreamException {
+        StringBuilder sb = new StringBuilder(NL);
+        for (int i = 0; i < depth; i++)
+            sb.append("  ");
+        out.writeCharacters(sb.toString());
+    }
+
+    private void writeCData(String data) throws XMLStreamException {
+        // CDATA section cannot contain "]]>": split it between two sections
+        int pos;
+        while ((pos = data.indexOf("]]>")) >= 0) {
+            out.writeCData(data.substring(0, pos + 2));
+            data = data.substring(pos + 2);
+        }
+        out.writeCData(data);
+    }
+
+    private void writeTextElement(String name, String text) throws XMLStreamException {
+        indent(3);
+        out.writeStartElement(name);
+        out.writeCharacters(text);
+        out.writeEndElement();
+    }
+
+    private void writeProfile(DetectorProfile profile) throws XMLStreamException {
+        indent(2);
+        out.writeEmptyElement("Detector");
+        // Time is in nanoseconds, Allocated is in bytes
+        if (profile.getAllocated() >= 0)
+            out.writeAttribute("Allocated", String.valueOf(profile.getAllocated()));
+        out.writeAttribute("Calls", String.valueOf(profile.getCalls()));
+        out.writeAttribute("Name", profile.getName());
+        out.writeAttribute("Time", String.valueOf(profile.getTime()));
+    }
+
+    private void writeError(ErrorMessage e) throws XMLStreamException {
+        indent(2);
+        out.writeStartElement("Error");
+        if (e.getClassName() != null)
+            out.writeAttribute("Class", e.getClassName());
+        if (e.getDetector() != null)
+            out.writeAttribute("Detector", e.getDetector());
+        if (e.getLine() != -1)
+            out.writeAttribute("Line", String.valueOf(e.getLine()));
+        if (e.getElementName() != null)
+            out.writeAttribute("Member", e.getElementName());
+        if (e.getDescriptor() != null)
+            out.writeAttribute("Signature", e.getDescriptor());
+        writeCData(e.getError());
+        out.writeEndElement();
+    }
+
+    private void writeWarning(Warning w, Formatter formatter) throws XMLStreamException {
+        String className = null, sourceFile = null;
+        MemberInfo method = null, field = null;
+        Location location = null;
+        List<Location> anotherLocations = new ArrayList<>();
+        List<WarningAnnotation<?>> attributes = new ArrayList<>();
+        for (WarningAnnotation<?> anno : (Iterable<WarningAnnotation<?>>) w.annotations()::iterator) {
+            switch (anno.getRole()) {
+            case "TYPE":
+                className = ((TypeInfo) anno.getValue()).getTypeName();
+                break;
+            case "FILE":
+                sourceFile = formatter.formatValue(anno.getValue(), Formatter.FORMAT_PLAIN);
+                break;
+            case "LOCATION":
+                location = (Location) anno.getValue();
+                break;
+            case "ANOTHER_INSTANCE":
+                anotherLocations.add((Location) anno.getValue());
+                break;
+            case "METHOD":
+                method = (MemberInfo) anno.getValue();
+                break;
+            case "FIELD":
+                field = (MemberInfo) anno.getValue();
+                break;
+            default:
+                attributes.add(anno);
+            }
+        }
+        indent(2);
+        out.writeStartElement("Warning");
+        out.writeAttribute("Category", w.getType().getCategory());
+        out.writeAttribute("Score", String.valueOf(w.getScore()));
+        out.writeAttribute("Type", w.getType().getName());
+        writeTextElement("Title", formatter.getTitle(w));
+        writeTextElement("Description", formatter.getDescription(w));
+        indent(3);
+        out.writeStartElement("LongDescription");
+        writeCData(formatter.getLongDescription(w));
+        out.writeEndElement();
+        indent(3);
+        out.writeEmptyElement("Class");
+        if (className != null)
+            out.writeAttribute("Name", className);
+        if (sourceFile != null)
+            out.writeAttribute("SourceFile", sourceFile);
+        if (method != null)
+            writeMember("Method", method);
+        if (field != null)
+            writeMember("Field", field);
+        if (location != null)
+            writeLocation("Location", location, sourceFile);
+        for (Location anotherLocation : anotherLocations)
+            writeLocation("AnotherLocation", anotherLocation, sourceFile);
+        for (WarningAnnotation<?> anno : attributes)
+            writeAnnotation(anno, formatter);
+        indent(2);
+        out.writeEndElement();
+    }
+
+    private void writeMember(String name, MemberInfo mr) throws XMLStreamException {
+        indent(3);
+        out.writeEmptyElement(name);
+        out.writeAttribute("Name", mr.getName());
+        out.writeAttribute("Signature", mr.getSignature());
+    }
+
+    private void writeLocation(String name, Location loc, String sourceFile) throws XMLStreamException {
+        indent(3);
+        out.writeEmptyElement(name);
+        if (loc.getSourceLine() != -1)
+            out.writeAttribute("Line", String.valueOf(loc.getSourceLine()));
+        out.writeAttribute("Offset", String.valueOf(loc.getOffset()));
+        if (sourceFile != null)
+            out.writeAttribute("SourceFile", sourceFile);
+    }
+
+    private void writeAnnotation(WarningAnnotation<?> anno, Formatter formatter) throws XMLStreamException {
+        Object value = anno.getValue();
+        indent(3);
+        if (value instanceof TypeInfo) {
+            out.writeEmptyElement("TypeAnnotation");
+            out.writeAttribute("Name", ((TypeInfo) value).getTypeName());
+            out.writeAttribute("Role", anno.getRole());
+        } else if (value instanceof Location) {
+            out.writeEmptyElement("LocationAnnotation");
+            out.writeAttribute("Line", String.valueOf(((Location) value).getSourceLine()));
+            out.writeAttribute("Role", anno.getRole());
+        } else if (value instanceof MemberInfo) {
+            MemberInfo mr = (MemberInfo) value;
+            out.writeEmptyElement("MemberAnnotation");
+            out.writeAttribute("Name", mr.getName());
+            out.writeAttribute("Role", anno.getRole());
+            out.writeAttribute("Signature", mr.getSignature());
+            out.writeAttribute("Type", mr.getTypeName());
+        } else {
+            out.writeStartElement("Annotation");
+            out.writeAttribute("Role", anno.getRole());
+            out.writeCharacters(formatter.formatValue(value, Formatter.FORMAT_PLAIN));
+            out.writeEndElement();
+        }
+    }
 }
@@ -15,8 +15,8 @@
  */
 package one.util.huntbugs.registry;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.Objects;
 import java.util.function.Function;
 
@@ -28,13 +28,19 @@ import com.strobel.assembler.metadata.TypeReference;
  *
  */
 public abstract class AbstractTypeDatabase<E> {
-    private final Map<String, E> map = new HashMap<>();
+    private final Map<String, E> map = new ConcurrentHashMap<>();
     private final Function<String, E> fn;
     
     protected AbstractTypeDatabase(Function<String, E> elementSupplier) {
         this.fn = Objects.requireNonNull(elementSupplier);
     }
     
+    /**
+     * Called for every project and dependency type during the preparation phase. Types may be visited from several
+     * threads, but calls for the same database instance are never concurrent.
+     * 
+     * @param td type to visit
+     */
     protected void visitType(TypeDefinition td) {
         // Default implementation is empty, should be subclasses
     }
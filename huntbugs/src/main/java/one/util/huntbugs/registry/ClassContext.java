@@ -40,15 +40,21 @@ public class ClassContext {
     final Detector detector;
     final Context ctx;
     final Object det;
+    final boolean profile;
     List<WarningAnnotation<?>> annot;
     private MemberAsserter ca;
+    // Visitors with the databases bound for this type: created on demand and shared by all the methods
+    private MethodHandle[] methodVisitors;
+    private MethodHandle[] methodAfterVisitors;
+    private MethodHandle[] astVisitors;
 
     ClassContext(Context ctx, TypeDefinition type, Detector detector) {
         super();
         this.type = type;
         this.detector = detector;
         this.ctx = ctx;
-        this.det = detector.newInstance();
+        this.det = detector.getInstance();
+        this.profile = ctx.getOptions().profileDetectors;
     }
     
     List<WarningAnnotation<?>> getTypeSpecificAnnotations() {
@@ -75,15 +81,43 @@ public class ClassContext {
         this.ca = ma;
     }
 
+    MethodHandle[] getMethodVisitors() {
+        if (methodVisitors == null)
+            methodVisitors = detector.bindDatabases(Detector.METHOD_VISITOR_TYPE.parameterCount(), type,
+                detector.methodVisitors);
+        return methodVisitors;
+    }
+
+    MethodHandle[] getMethodAfterVisitors() {
+        if (methodAfterVisitors == null)
+            methodAfterVisitors = detector.bindDatabases(Detector.METHOD_VISITOR_TYPE.parameterCount(), type,
+                detector.methodAfterVisitors);
+        return methodAfterVisitors;
+    }
+
+    MethodHandle[] getAstVisitors() {
+        if (astVisitors == null)
+            astVisitors = detector.bindAstVisitors(type);
+        return astVisitors;
+    }
+
     boolean visitClass() {
         for(MethodHandle mh : detector.classVisitors) {
+            long time = 0, allocated = 0;
+            if (profile) {
+                time = System.nanoTime();
+                allocated = Detector.allocatedBytes();
+            }
             try {
                 if (!(boolean) detector.bindDatabases(Detector.CLASS_VISITOR_TYPE.parameterCount(), type, mh)
-                        .invoke(det, this, type)) {
+                        .invokeExact(det, this, type)) {
                     return false;
                 }
             } catch (Throwable e) {
                 ctx.addError(new ErrorMessage(detector, type, e));
+            } finally {
+                if (profile)
+                    detector.addProfile(time, allocated);
             }
         }
         return !detector.methodVisitors.isEmpty() || !detector.astVisitors.isEmpty()
@@ -92,10 +126,19 @@ public class ClassContext {
     
     void visitAfterClass() {
         for(MethodHandle mh : detector.classAfterVisitors) {
+            long time = 0, allocated = 0;
+            if (profile) {
+                time = System.nanoTime();
+                allocated = Detector.allocatedBytes();
+            }
             try {
-                detector.bindDatabases(Detector.CLASS_VISITOR_TYPE.parameterCount(), type, mh).invoke(det, this, type);
+                detector.bindDatabases(Detector.CLASS_VISITOR_TYPE.parameterCount(), type, mh).invokeExact(det,
+                    this, type);
             } catch (Throwable e) {
                 ctx.addError(new ErrorMessage(detector, type, e));
+            } finally {
+                if (profile)
+                    detector.addProfile(time, allocated);
             }
         }
     }
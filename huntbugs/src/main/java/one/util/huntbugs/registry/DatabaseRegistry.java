@@ -15,7 +15,13 @@
  */
 package one.util.huntbugs.registry;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -59,11 +65,54 @@ public class DatabaseRegistry {
         return getDatabaseInfo(clazz)::getDatabase;
     }
     
+    /**
+     * @param clazz database class
+     * @return database instance or null if no detector requested this database
+     */
+    public <T> T getDatabase(Class<T> clazz) {
+        DatabaseInfo<?> di = instances.get(clazz);
+        return di == null ? null : clazz.cast(di.db);
+    }
+
     void visitType(TypeDefinition td) {
         for(DatabaseInfo<?> dbi : instances.values()) {
             Object db = dbi.db;
             if(db instanceof AbstractTypeDatabase) {
-                ((AbstractTypeDatabase<?>) db).visitType(td);
+                // Types may be visited concurrently: serialize updates of the same database
+                synchronized (db) {
+                    ((AbstractTypeDatabase<?>) db).visitType(td);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return type databases sorted by class name or null if some of them do not implement {@link SnapshotSupport}
+     */
+    List<AbstractTypeDatabase<?>> getSnapshotDatabases() {
+        List<AbstractTypeDatabase<?>> result = new ArrayList<>();
+        for(DatabaseInfo<?> dbi : instances.values()) {
+            Object db = dbi.db;
+            if(db instanceof AbstractTypeDatabase) {
+                if(!(db instanceof SnapshotSupport))
+                    return null;
+                result.add((AbstractTypeDatabase<?>) db);
+            }
+        }
+        result.sort(Comparator.comparing(db -> db.getClass().getName()));
+        return result;
+    }
+
+    void writeType(List<AbstractTypeDatabase<?>> dbs, TypeDefinition td, DataOutput out) throws IOException {
+        for(AbstractTypeDatabase<?> db : dbs) {
+            ((SnapshotSupport)db).writeType(td, out);
+        }
+    }
+
+    void readType(List<AbstractTypeDatabase<?>> dbs, String internalName, DataInput in) throws IOException {
+        for(AbstractTypeDatabase<?> db : dbs) {
+            synchronized (db) {
+                ((SnapshotSupport)db).readType(internalName, in);
             }
         }
     }
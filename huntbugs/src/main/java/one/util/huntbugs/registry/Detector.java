@@ -18,18 +18,28 @@ package one.util.huntbugs.registry;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 import com.strobel.assembler.metadata.MethodDefinition;
 import com.strobel.assembler.metadata.TypeDefinition;
 import com.strobel.assembler.metadata.TypeReference;
+import com.strobel.decompiler.ast.AstCode;
 import com.strobel.decompiler.ast.Block;
 import com.strobel.decompiler.ast.Expression;
 import com.strobel.decompiler.ast.Node;
@@ -54,25 +64,52 @@ public class Detector {
     private static final MethodHandle ALWAYS_TRUE = MethodHandles.constant(boolean.class, true);
     private static final MethodType NODE_VISITOR_TYPE = MethodType.methodType(boolean.class, Object.class, Node.class,
         NodeChain.class, MethodContext.class, MethodDefinition.class, TypeDefinition.class);
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = getThreadMXBean();
+    private static final int[] NO_VISITORS = {};
+    // Guarded by Detector.class
+    private static int profilingAnalyses;
+    private static boolean allocatedMemoryWasEnabled;
 
     private final Map<String, WarningType> wts;
     final Map<Class<?>, Function<TypeReference, ?>> dbFetchers = new HashMap<>();
     private final Class<?> clazz;
     final List<VisitorInfo> astVisitors = new ArrayList<>();
+    // Indices of astVisitors to call for the expression, indexed by AstCode ordinal
+    final int[][] expressionVisitors = new int[AstCode.values().length][];
+    // Indices of astVisitors to call for the method root node
+    final int[] rootVisitors;
+    // Indices of astVisitors to call for other nodes which are not expressions
+    final int[] nodeVisitors;
     final List<MethodHandle> methodVisitors = new ArrayList<>();
     final List<MethodHandle> methodAfterVisitors = new ArrayList<>();
     final List<MethodHandle> classVisitors = new ArrayList<>();
     final List<MethodHandle> classAfterVisitors = new ArrayList<>();
+    // The only instance of the detector which has no state or null
+    private final Object sharedInstance;
+    // Per-thread instances of Resettable detector or null
+    private final ThreadLocal<Object> threadInstances;
+    private final LongAdder profileCalls = new LongAdder();
+    private final LongAdder profileTime = new LongAdder();
+    private final LongAdder profileAllocated = new LongAdder();
+    private volatile boolean allocationAccounted;
 
     class VisitorInfo {
         final VisitorType type;
         final MethodHandle mh;
         final AstVisitor anno;
+        // Expression codes which make this visitor rely on the dataflow: empty if it never does, null if it always does
+        final Set<AstCode> dataflowCodes;
 
         public VisitorInfo(AstVisitor anno, VisitorType type, MethodHandle mh) {
             this.anno = anno;
             this.type = type;
             this.mh = mh;
+            if (!anno.dataflow())
+                dataflowCodes = EnumSet.noneOf(AstCode.class);
+            else if (anno.codes().length == 0)
+                dataflowCodes = null;
+            else
+                dataflowCodes = EnumSet.copyOf(Arrays.asList(anno.codes()));
         }
 
         public MethodHandle bind(TypeDefinition td) {
@@ -81,6 +118,16 @@ public class Detector {
             return type.adapt(mh);
         }
 
+        public boolean isApplicable(AstCode code) {
+            if (type == VisitorType.AST_BODY_VISITOR)
+                return false;
+            return anno.codes().length == 0 || Arrays.asList(anno.codes()).contains(code);
+        }
+
+        public boolean isApplicable(boolean root) {
+            return type == VisitorType.AST_NODE_VISITOR || root && type == VisitorType.AST_BODY_VISITOR;
+        }
+
         public boolean isApplicable(MethodDefinition md) {
             if (!anno.methodName().isEmpty() && !anno.methodName().equals(md.getName()))
                 return false;
@@ -149,24 +196,66 @@ public class Detector {
         for (Method m : clazz.getMethods()) {
             AstVisitor av = m.getAnnotation(AstVisitor.class);
             if (av != null) {
+                if (av.codes().length > 0 && av.nodes() != AstNodes.EXPRESSIONS) {
+                    throw new IllegalStateException(m + ": codes can be specified for expression visitors only");
+                }
                 for (VisitorType type : VisitorType.values()) {
                     if (av.nodes() == type.nodeTypes) {
-                        astVisitors.add(new VisitorInfo(av, type, adapt(MethodHandles.publicLookup().unreflect(
-                            m), type.wantedType, databases)));
+                        MethodHandle mh = adapt(MethodHandles.publicLookup().unreflect(m), type.wantedType, databases);
+                        astVisitors.add(new VisitorInfo(av, type, mh));
                     }
                 }
             }
             MethodVisitor mv = m.getAnnotation(MethodVisitor.class);
             if (mv != null) {
-                (mv.order() == VisitOrder.AFTER ? methodAfterVisitors : methodVisitors).add(adapt(MethodHandles
-                        .publicLookup().unreflect(m), METHOD_VISITOR_TYPE, databases));
+                MethodHandle mh = adapt(MethodHandles.publicLookup().unreflect(m), METHOD_VISITOR_TYPE, databases);
+                if (mv.order() == VisitOrder.AFTER)
+                    methodAfterVisitors.add(dropResult(mh));
+                else
+                    methodVisitors.add(mh);
             }
             ClassVisitor cv = m.getAnnotation(ClassVisitor.class);
             if (cv != null) {
-                (cv.order() == VisitOrder.AFTER ? classAfterVisitors : classVisitors).add(adapt(MethodHandles
-                        .publicLookup().unreflect(m), CLASS_VISITOR_TYPE, databases));
+                MethodHandle mh = adapt(MethodHandles.publicLookup().unreflect(m), CLASS_VISITOR_TYPE, databases);
+                if (cv.order() == VisitOrder.AFTER)
+                    classAfterVisitors.add(dropResult(mh));
+                else
+                    classVisitors.add(mh);
             }
         }
+        if (Resettable.class.isAssignableFrom(clazz)) {
+            sharedInstance = null;
+            threadInstances = ThreadLocal.withInitial(this::newInstance);
+        } else {
+            sharedInstance = isStateless(clazz) ? newInstance() : null;
+            threadInstances = null;
+        }
+        rootVisitors = dispatchTable(vi -> vi.isApplicable(true));
+        nodeVisitors = dispatchTable(vi -> vi.isApplicable(false));
+        for (AstCode code : AstCode.values()) {
+            expressionVisitors[code.ordinal()] = dispatchTable(vi -> vi.isApplicable(code));
+        }
+    }
+
+    private int[] dispatchTable(Predicate<VisitorInfo> filter) {
+        int[] result = IntStream.range(0, astVisitors.size()).filter(i -> filter.test(astVisitors.get(i))).toArray();
+        return result.length == 0 ? NO_VISITORS : result;
+    }
+
+    MethodHandle[] bindDatabases(int count, TypeDefinition td, List<MethodHandle> mhs) {
+        MethodHandle[] result = new MethodHandle[mhs.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bindDatabases(count, td, mhs.get(i));
+        }
+        return result;
+    }
+
+    MethodHandle[] bindAstVisitors(TypeDefinition td) {
+        MethodHandle[] result = new MethodHandle[astVisitors.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = astVisitors.get(i).bind(td);
+        }
+        return result;
     }
 
     MethodHandle bindDatabases(int count, TypeDefinition td, MethodHandle mh) {
@@ -188,6 +277,11 @@ public class Detector {
         return clazz.cast(fn.apply(tr));
     }
 
+    // After visitors cannot stop the visiting, so their result is not needed
+    private static MethodHandle dropResult(MethodHandle mh) {
+        return mh.asType(mh.type().changeReturnType(void.class));
+    }
+
     private MethodHandle adapt(MethodHandle mh, MethodType wantedType, DatabaseRegistry databases) {
         MethodType type = mh.type();
         MethodHandle result = MethodHandles.explicitCastArguments(mh, type.changeParameterType(0, Object.class));
@@ -240,6 +334,71 @@ public class Detector {
         return result;
     }
 
+    private static com.sun.management.ThreadMXBean getThreadMXBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported())
+                return sunBean;
+        }
+        return null;
+    }
+
+    /**
+     * Enables the JVM-wide thread allocated memory accounting if it's supported. Must be paired with
+     * {@link #restoreAllocationAccounting()}. Nested calls from concurrent analyses are allowed.
+     */
+    static synchronized void enableAllocationAccounting() {
+        if (THREAD_MX_BEAN == null)
+            return;
+        if (profilingAnalyses++ == 0) {
+            allocatedMemoryWasEnabled = THREAD_MX_BEAN.isThreadAllocatedMemoryEnabled();
+            if (!allocatedMemoryWasEnabled)
+                THREAD_MX_BEAN.setThreadAllocatedMemoryEnabled(true);
+        }
+    }
+
+    /**
+     * Restores the thread allocated memory accounting setting which was active before the first
+     * {@link #enableAllocationAccounting()} call.
+     */
+    static synchronized void restoreAllocationAccounting() {
+        if (THREAD_MX_BEAN == null)
+            return;
+        if (--profilingAnalyses == 0 && !allocatedMemoryWasEnabled)
+            THREAD_MX_BEAN.setThreadAllocatedMemoryEnabled(false);
+    }
+
+    /**
+     * @return number of bytes allocated by the current thread or -1 if not supported or not enabled
+     */
+    static long allocatedBytes() {
+        return THREAD_MX_BEAN == null ? -1 : THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Accounts single visitor invocation
+     * 
+     * @param startTime {@link System#nanoTime()} before the invocation
+     * @param startAllocated {@link #allocatedBytes()} before the invocation
+     */
+    void addProfile(long startTime, long startAllocated) {
+        profileTime.add(System.nanoTime() - startTime);
+        if (startAllocated >= 0) {
+            long allocated = allocatedBytes();
+            if (allocated >= 0) {
+                profileAllocated.add(allocated - startAllocated);
+                allocationAccounted = true;
+            }
+        }
+        profileCalls.increment();
+    }
+
+    DetectorProfile getProfile() {
+        return new DetectorProfile(toString(), profileCalls.sum(), profileTime.sum(), allocationAccounted
+            ? profileAllocated.sum() : -1);
+    }
+
     public WarningType getWarningType(String typeName) {
         return wts.get(typeName);
     }
@@ -249,6 +408,30 @@ public class Detector {
         return clazz.getName().replace(DetectorRegistry.DETECTORS_PACKAGE, "internal");
     }
 
+    private static boolean isStateless(Class<?> clazz) {
+        for (Class<?> c = clazz; c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return detector instance ready to analyze new class: either shared, reset or newly created one
+     */
+    public Object getInstance() {
+        if (sharedInstance != null)
+            return sharedInstance;
+        if (threadInstances != null) {
+            Object instance = threadInstances.get();
+            ((Resettable) instance).reset();
+            return instance;
+        }
+        return newInstance();
+    }
+
     public Object newInstance() {
         try {
             return clazz.newInstance();
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.registry;
+
+/**
+ * Time and memory spent by the detector visitors during the analysis. Collected only if
+ * {@link one.util.huntbugs.analysis.AnalysisOptions#profileDetectors} is set.
+ * 
+ * @author lan
+ *
+ */
+public class DetectorProfile {
+    private final String name;
+    private final long calls, time, allocated;
+
+    DetectorProfile(String name, long calls, long time, long allocated) {
+        this.name = name;
+        this.calls = calls;
+        this.time = time;
+        this.allocated = allocated;
+    }
+
+    /**
+     * @return detector name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return number of visitor invocations
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * @return total wall time of visitor invocations in nanoseconds
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return number of bytes allocated by visitors or -1 if JVM does not support thread allocation accounting
+     */
+    public long getAllocated() {
+        return allocated;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d calls, %.3f ms%s", name, calls, time / 1_000_000.0, allocated < 0 ? "" : String
+                .format(", %.3f MB allocated", allocated / 1048576.0));
+    }
+}
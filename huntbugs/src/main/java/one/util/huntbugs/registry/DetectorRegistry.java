@@ -15,13 +15,23 @@
  */
 package one.util.huntbugs.registry;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -32,16 +42,18 @@ import com.strobel.assembler.metadata.MethodDefinition;
 import com.strobel.assembler.metadata.TypeDefinition;
 import com.strobel.decompiler.DecompilerContext;
 import com.strobel.decompiler.ast.AstBuilder;
+import com.strobel.decompiler.ast.AstCode;
 import com.strobel.decompiler.ast.AstOptimizationStep;
 import com.strobel.decompiler.ast.AstOptimizer;
 import com.strobel.decompiler.ast.Block;
+import com.strobel.decompiler.ast.Expression;
 import com.strobel.decompiler.ast.Lambda;
 import com.strobel.decompiler.ast.Node;
 
 import one.util.huntbugs.analysis.Context;
 import one.util.huntbugs.analysis.ErrorMessage;
+import one.util.huntbugs.analysis.WarningCache;
 import one.util.huntbugs.assertions.MemberAsserter;
-import one.util.huntbugs.flow.ValuesFlow;
 import one.util.huntbugs.registry.anno.WarningDefinition;
 import one.util.huntbugs.repo.Repository;
 import one.util.huntbugs.repo.RepositoryVisitor;
@@ -185,6 +197,73 @@ public class DetectorRegistry {
         }
     }
 
+    /**
+     * @return string which identifies the content of type snapshots or null if some of the requested databases cannot
+     *         be populated from the snapshot. It includes the bytecode hash of every database, so the snapshots are
+     *         not reused if the record format might have changed.
+     */
+    public String getSnapshotSignature() {
+        List<AbstractTypeDatabase<?>> dbs = databases.getSnapshotDatabases();
+        if (dbs == null)
+            return null;
+        return dbs.stream().map(db -> db.getClass().getName() + ":" + classHash(db.getClass())).collect(
+            Collectors.joining(","));
+    }
+
+    private static String classHash(Class<?> clazz) {
+        String resource = clazz.getName().substring(clazz.getName().lastIndexOf('.') + 1) + ".class";
+        try (InputStream is = clazz.getResourceAsStream(resource)) {
+            if (is == null)
+                return "";
+            MessageDigest md = WarningCache.createDigest();
+            byte[] buf = new byte[8192];
+            int read;
+            while ((read = is.read(buf)) > 0)
+                md.update(buf, 0, read);
+            return WarningCache.toHex(md.digest());
+        } catch (IOException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    /**
+     * @param type type to snapshot
+     * @return the information databases extract from the type and its nested types, which can be later passed to
+     *         {@link #populateDatabases(byte[])}
+     */
+    public byte[] snapshotType(TypeDefinition type) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DataOutputStream dos = new DataOutputStream(out)) {
+            writeSnapshot(databases.getSnapshotDatabases(), type, dos);
+        } catch (IOException e) {
+            throw new InternalError(e);
+        }
+        return out.toByteArray();
+    }
+
+    private void writeSnapshot(List<AbstractTypeDatabase<?>> dbs, TypeDefinition type, DataOutputStream out)
+            throws IOException {
+        out.writeUTF(type.getInternalName());
+        databases.writeType(dbs, type, out);
+        List<TypeDefinition> subTypes = type.getDeclaredTypes();
+        out.writeShort(subTypes.size());
+        for (TypeDefinition subType : subTypes) {
+            writeSnapshot(dbs, subType, out);
+        }
+    }
+
+    public void populateDatabases(byte[] snapshot) throws IOException {
+        readSnapshot(databases.getSnapshotDatabases(), new DataInputStream(new ByteArrayInputStream(snapshot)));
+    }
+
+    private void readSnapshot(List<AbstractTypeDatabase<?>> dbs, DataInputStream in) throws IOException {
+        databases.readType(dbs, in.readUTF(), in);
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            readSnapshot(dbs, in);
+        }
+    }
+
     public void analyzeClass(TypeDefinition type) {
         ctx.incStat("TotalClasses");
         MemberAsserter ca = MemberAsserter.forMember(type);
@@ -218,12 +297,23 @@ public class DetectorRegistry {
                     try {
                         methodAst.getBody().addAll(AstBuilder.build(body, true, context));
                         AstOptimizer.optimize(context, methodAst, AstOptimizationStep.None);
-                        mdata.origParams = ValuesFlow.annotate(ctx, md, methodAst);
+                        mdata.methodAst = methodAst;
+                        Set<AstCode> codes = EnumSet.noneOf(AstCode.class);
+                        // The method body is scanned only if every visitor needing the dataflow is restricted by codes
+                        boolean dataflow = !mcs.get(true).stream().allMatch(mc -> mc.addDataflowCodes(codes))
+                            || !codes.isEmpty() && Nodes.find(methodAst, n -> n instanceof Expression && codes
+                                    .contains(((Expression) n).getCode())) != null;
+                        if (dataflow)
+                            mdata.annotate(ctx);
                     } catch (Throwable t) {
                         ctx.addError(new ErrorMessage(null, type.getFullName(), md.getFullName(), md.getSignature(),
                                 -1, t));
                     }
                     visitChildren(methodAst, null, mcs.get(true), mdata);
+                    // Visitors may build the dataflow on demand, so the skip is counted afterwards
+                    ctx.incStat("ValuesFlowSkipped.Total");
+                    if (!mdata.annotated)
+                        ctx.incStat("ValuesFlowSkipped");
                 }
             }
             for (MethodContext mc : mcs.get(true)) {
@@ -261,6 +351,29 @@ public class DetectorRegistry {
         }
     }
 
+    /**
+     * Enables the measurements which are necessary for the detector profiles. Must be paired with
+     * {@link #finishProfiling()}.
+     */
+    public void startProfiling() {
+        Detector.enableAllocationAccounting();
+    }
+
+    /**
+     * Restores the JVM settings changed by {@link #startProfiling()}.
+     */
+    public void finishProfiling() {
+        Detector.restoreAllocationAccounting();
+    }
+
+    /**
+     * @return profiles of the detectors which were invoked at least once, most expensive first
+     */
+    public List<DetectorProfile> getProfiles() {
+        return detectors.stream().map(Detector::getProfile).filter(p -> p.getCalls() > 0).sorted(
+            Comparator.comparingLong(DetectorProfile::getTime).reversed()).collect(Collectors.toList());
+    }
+
     public void reportWarningTypes(PrintStream out) {
         List<String> result = new ArrayList<>();
 
@@ -301,6 +414,19 @@ public class DetectorRegistry {
         rows.forEach(out::println);
     }
 
+    /**
+     * @return string which describes all the active detectors and warning types along with their scores
+     */
+    public String getSignature() {
+        return typeToDetector.entrySet().stream().map(
+            e -> e.getKey().getCategory() + "/" + e.getKey().getName() + "/" + e.getKey().getMaxScore() + "/"
+                + e.getValue()).sorted().collect(Collectors.joining("\n"));
+    }
+
+    public <T> T getDatabase(Class<T> clazz) {
+        return databases.getDatabase(clazz);
+    }
+
     public WarningType getWarningType(String typeName) {
         return typeToDetector.keySet().stream().filter(wt -> wt.getName().equals(typeName)).findFirst().orElse(null);
     }
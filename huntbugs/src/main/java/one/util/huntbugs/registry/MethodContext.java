@@ -18,10 +18,8 @@ package one.util.huntbugs.registry;
 import java.lang.invoke.MethodHandle;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import one.util.huntbugs.analysis.Context;
 import one.util.huntbugs.analysis.ErrorMessage;
@@ -91,7 +89,9 @@ public class MethodContext {
     private final Object det;
     private final ClassContext cc;
     private WarningInfo lastWarning;
-    private final List<MethodHandle> astVisitors;
+    // Bound AST visitors indexed as Detector.astVisitors: null if not applicable to this method or finished
+    private final MethodHandle[] astVisitors;
+    private int activeVisitors;
 
     MethodContext(Context ctx, ClassContext classCtx, MethodData md) {
         this.cc = classCtx;
@@ -99,47 +99,98 @@ public class MethodContext {
         this.ctx = ctx;
         this.detector = classCtx.detector;
         this.det = classCtx.det;
-        astVisitors = detector.astVisitors.stream().filter(vi -> vi.isApplicable(md.mainMethod)).map(
-            vi -> vi.bind(classCtx.type)).collect(Collectors.toCollection(ArrayList::new));
+        astVisitors = new MethodHandle[detector.astVisitors.size()];
+        if (astVisitors.length > 0) {
+            MethodHandle[] bound = classCtx.getAstVisitors();
+            for (int i = 0; i < astVisitors.length; i++) {
+                if (detector.astVisitors.get(i).isApplicable(md.mainMethod)) {
+                    astVisitors[i] = bound[i];
+                    activeVisitors++;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param codes set to add the codes of the expressions which make active visitors rely on the dataflow
+     * @return false if some active visitor relies on the dataflow regardless of the expression codes
+     */
+    boolean addDataflowCodes(Set<AstCode> codes) {
+        for (int i = 0; i < astVisitors.length; i++) {
+            if (astVisitors[i] == null)
+                continue;
+            Set<AstCode> visitorCodes = detector.astVisitors.get(i).dataflowCodes;
+            if (visitorCodes == null)
+                return false;
+            codes.addAll(visitorCodes);
+        }
+        return true;
     }
 
     boolean visitMethod() {
-        for(MethodHandle mh : detector.methodVisitors) {
+        for(MethodHandle mh : cc.getMethodVisitors()) {
+            long time = 0, allocated = 0;
+            if (cc.profile) {
+                time = System.nanoTime();
+                allocated = Detector.allocatedBytes();
+            }
             try {
-                if (!(boolean) detector.bindDatabases(Detector.METHOD_VISITOR_TYPE.parameterCount(), cc.type, mh)
-                        .invoke(det, this, mdata.mainMethod, cc.type)) {
+                if (!(boolean) mh.invokeExact(det, this, mdata.mainMethod, cc.type)) {
                     return false;
                 }
             } catch (Throwable e) {
                 ctx.addError(new ErrorMessage(detector, mdata.mainMethod, -1, e));
+            } finally {
+                if (cc.profile)
+                    detector.addProfile(time, allocated);
             }
         }
-        return !astVisitors.isEmpty() || !detector.methodAfterVisitors.isEmpty();
+        return activeVisitors > 0 || !detector.methodAfterVisitors.isEmpty();
     }
 
     void visitAfterMethod() {
-        for(MethodHandle mh : detector.methodVisitors) {
+        for(MethodHandle mh : cc.getMethodAfterVisitors()) {
+            long time = 0, allocated = 0;
+            if (cc.profile) {
+                time = System.nanoTime();
+                allocated = Detector.allocatedBytes();
+            }
             try {
-                detector.bindDatabases(Detector.METHOD_VISITOR_TYPE.parameterCount(), cc.type, mh)
-                        .invoke(det, this, mdata.mainMethod, cc.type);
+                mh.invokeExact(det, this, mdata.mainMethod, cc.type);
             } catch (Throwable e) {
                 ctx.addError(new ErrorMessage(detector, mdata.mainMethod, -1, e));
+            } finally {
+                if (cc.profile)
+                    detector.addProfile(time, allocated);
             }
         }
     }
 
     boolean visitNode(Node node) {
-        for (Iterator<MethodHandle> it = astVisitors.iterator(); it.hasNext();) {
+        int[] visitors = node instanceof Expression ? detector.expressionVisitors[((Expression) node).getCode()
+                .ordinal()] : mdata.parents == null ? detector.rootVisitors : detector.nodeVisitors;
+        for (int i : visitors) {
+            MethodHandle mh = astVisitors[i];
+            if (mh == null)
+                continue;
+            long time = 0, allocated = 0;
+            if (cc.profile) {
+                time = System.nanoTime();
+                allocated = Detector.allocatedBytes();
+            }
             try {
-                MethodHandle mh = it.next();
-                if (!(boolean) mh.invoke(det, node, mdata.parents, this, mdata.mainMethod, cc.type)) {
-                    it.remove();
+                if (!(boolean) mh.invokeExact(det, node, mdata.parents, this, mdata.mainMethod, cc.type)) {
+                    astVisitors[i] = null;
+                    activeVisitors--;
                 }
             } catch (Throwable e) {
                 ctx.addError(new ErrorMessage(detector, mdata.mainMethod, -1, e));
+            } finally {
+                if (cc.profile)
+                    detector.addProfile(time, allocated);
             }
         }
-        return !astVisitors.isEmpty();
+        return activeVisitors > 0;
     }
 
     void finalizeMethod() {
@@ -176,7 +227,8 @@ public class MethodContext {
             Object operand = expr.getOperand();
             if (operand instanceof Variable) {
                 anno.add(WarningAnnotation.forVariable((Variable) operand));
-                operand = ValuesFlow.getSource(expr).getOperand();
+                if (mdata.annotate(ctx))
+                    operand = ValuesFlow.getSource(expr).getOperand();
             }
             if (operand instanceof FieldReference) {
                 anno.add(WarningAnnotation.forField((FieldReference) operand));
@@ -227,14 +279,17 @@ public class MethodContext {
     }
 
     /**
+     * Annotates the method via ValuesFlow if it was not annotated yet. Detectors which are not marked with
+     * {@link one.util.huntbugs.registry.anno.AstVisitor#dataflow()} should call this before querying the dataflow of the visited nodes.
+     * 
      * @return true if the method is fully annotated via ValuesFlow
      */
     public boolean isAnnotated() {
-        return mdata.origParams != null;
+        return mdata.annotate(ctx);
     }
     
     public Set<Expression> getParameterUsages(ParameterDefinition pd) {
-        if(mdata.origParams == null)
+        if(!isAnnotated())
             return null;
         for(Expression expr : mdata.origParams) {
             if(expr.getOperand() == pd)
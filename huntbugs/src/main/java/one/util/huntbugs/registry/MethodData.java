@@ -17,7 +17,11 @@ package one.util.huntbugs.registry;
 
 import java.util.Collections;
 import java.util.List;
+
+import one.util.huntbugs.analysis.Context;
+import one.util.huntbugs.analysis.ErrorMessage;
 import one.util.huntbugs.assertions.MemberAsserter;
+import one.util.huntbugs.flow.ValuesFlow;
 import one.util.huntbugs.util.NodeChain;
 import one.util.huntbugs.warning.WarningAnnotation;
 import one.util.huntbugs.warning.WarningAnnotation.Location;
@@ -50,12 +54,27 @@ final class MethodData {
 
     private OffsetToLineNumberConverter ltc;
     List<Expression> origParams;
+    // Method body which is annotated with ValuesFlow on the first request
+    Block methodAst;
+    boolean annotated;
 
     MethodData(MethodDefinition md, MemberAsserter ma) {
         this.mainMethod = this.realMethod = md;
         this.ma = ma;
     }
 
+    boolean annotate(Context ctx) {
+        if (!annotated && methodAst != null) {
+            annotated = true;
+            try {
+                origParams = ValuesFlow.annotate(ctx, mainMethod, methodAst);
+            } catch (Throwable t) {
+                ctx.addError(new ErrorMessage(null, mainMethod, -1, t));
+            }
+        }
+        return origParams != null;
+    }
+
     int getLineNumber(int offset) {
         int line = getConverter().getLineForOffset(offset);
         return line == OffsetToLineNumberConverter.UNKNOWN_LINE_NUMBER ? -1 : line;
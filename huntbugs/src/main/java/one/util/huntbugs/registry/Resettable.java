@@ -0,0 +1,32 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.registry;
+
+/**
+ * Detector which keeps state between visitor calls may implement this interface to allow reusing its instance for
+ * many classes. Such detector is instantiated once per analysis thread and {@link #reset()} is called before
+ * analyzing every class. Detectors without instance fields are always reused; other detectors are created anew for
+ * every class.
+ * 
+ * @author lan
+ *
+ */
+public interface Resettable {
+    /**
+     * Clears the state left after the analysis of the previous class
+     */
+    void reset();
+}
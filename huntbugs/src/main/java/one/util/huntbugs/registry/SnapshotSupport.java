@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.registry;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.strobel.assembler.metadata.TypeDefinition;
+
+/**
+ * May be implemented by {@link AbstractTypeDatabase} subclasses to allow storing the information collected from
+ * dependency types in the database snapshots, so the dependency types need not to be resolved again in the subsequent
+ * analyses.
+ * 
+ * @author lan
+ *
+ */
+public interface SnapshotSupport {
+    /**
+     * Writes the information {@link AbstractTypeDatabase#visitType(TypeDefinition)} would extract from given type.
+     * 
+     * @param td type to write
+     * @param out output to write to
+     * @throws IOException if output fails
+     */
+    void writeType(TypeDefinition td, DataOutput out) throws IOException;
+
+    /**
+     * Updates the database with the information previously written by {@link #writeType(TypeDefinition, DataOutput)}.
+     * Like visitType, this method is never called concurrently for the same database.
+     * 
+     * @param internalName internal name of the type
+     * @param in input to read from
+     * @throws IOException if input fails
+     */
+    void readType(String internalName, DataInput in) throws IOException;
+}
@@ -24,6 +24,8 @@ import one.util.huntbugs.registry.MethodContext;
 
 import com.strobel.assembler.metadata.MethodDefinition;
 import com.strobel.assembler.metadata.TypeDefinition;
+import com.strobel.decompiler.ast.AstCode;
+import com.strobel.decompiler.ast.Node;
 
 /**
  * Method in detector class which called for AST nodes.
@@ -41,6 +43,21 @@ import com.strobel.assembler.metadata.TypeDefinition;
 public @interface AstVisitor {
     AstNodes nodes() default AstNodes.ALL;
     
+    /**
+     * @return codes of the expressions to visit. If specified, the visitor is called only for the expressions having
+     *         one of these codes. Allowed only for {@link AstNodes#EXPRESSIONS} visitors.
+     */
+    AstCode[] codes() default {};
+    
+    /**
+     * @return whether the visitor relies on the {@link one.util.huntbugs.flow.ValuesFlow} annotations (including the
+     *         ones used by {@link one.util.huntbugs.util.Nodes#getChild(Node, int)} and
+     *         {@link one.util.huntbugs.util.Nodes#getConstant(Node)}). If no active visitor needs the dataflow, it's not
+     *         calculated for the method unless requested via {@link MethodContext#isAnnotated()} or required by the
+     *         reported warning.
+     */
+    boolean dataflow() default true;
+    
     String methodName() default "";
 
     String methodSignature() default "";
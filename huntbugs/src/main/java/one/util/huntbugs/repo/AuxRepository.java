@@ -15,6 +15,10 @@
  */
 package one.util.huntbugs.repo;
 
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
 import com.strobel.assembler.metadata.ITypeLoader;
 
 /**
@@ -25,9 +29,20 @@ import com.strobel.assembler.metadata.ITypeLoader;
  */
 public class AuxRepository implements Repository {
     private final ITypeLoader loader;
+    private final List<Path> jars;
 
     public AuxRepository(ITypeLoader loader) {
+        this(loader, Collections.emptyList());
+    }
+
+    /**
+     * @param loader type loader for auxiliary classes
+     * @param jars jar files the loader reads classes from, in the lookup order (may be the prefix of the loader
+     *        classpath if the rest is not the jar files)
+     */
+    public AuxRepository(ITypeLoader loader, List<Path> jars) {
         this.loader = loader;
+        this.jars = jars;
     }
 
     @Override
@@ -35,6 +50,11 @@ public class AuxRepository implements Repository {
         return loader;
     }
 
+    @Override
+    public List<Path> getAuxJars() {
+        return jars;
+    }
+
     @Override
     public void visit(String rootPackage, RepositoryVisitor visitor) {
     }
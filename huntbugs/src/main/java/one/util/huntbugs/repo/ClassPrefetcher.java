@@ -0,0 +1,188 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.repo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.strobel.assembler.metadata.Buffer;
+
+/**
+ * Reads the class files of {@link DirRepository} in a background thread ahead of the analysis. Read files are kept in
+ * the pool limited by the total size until the type loader takes them. Files which were not taken are dropped once
+ * the loaders moved far enough.
+ * 
+ * @author lan
+ *
+ */
+class ClassPrefetcher {
+    // How many top-level classes behind the most advanced loaded one the pool entry is considered stale
+    private static final int STALE_DISTANCE = 256;
+
+    private final Path root;
+    private final Function<String, Collection<String>> nestedClasses;
+    private final long maxBytes;
+
+    private final Map<String, Entry> pool = new HashMap<>();
+    private Map<String, Integer> positions = Collections.emptyMap();
+    private long poolBytes;
+    private volatile int progress;
+    private int generation;
+    private Thread thread;
+
+    private static class Entry {
+        final int position;
+        final byte[] data;
+
+        Entry(int position, byte[] data) {
+            this.position = position;
+            this.data = data;
+        }
+    }
+
+    /**
+     * @param root repository root
+     * @param nestedClasses function which returns the known nested classes for the top-level class
+     * @param maxBytes maximal total size of files in the pool
+     */
+    ClassPrefetcher(Path root, Function<String, Collection<String>> nestedClasses, long maxBytes) {
+        this.root = root;
+        this.nestedClasses = nestedClasses;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Starts prefetching given classes stopping the previous prefetching if any
+     * 
+     * @param classNames top-level classes in the expected loading order (may be empty)
+     */
+    synchronized void start(List<String> classNames) {
+        generation++;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+        pool.clear();
+        poolBytes = 0;
+        progress = 0;
+        positions = new HashMap<>();
+        if (classNames.isEmpty())
+            return;
+        for (int i = 0; i < classNames.size(); i++) {
+            positions.put(classNames.get(i), i);
+        }
+        int gen = generation;
+        thread = new Thread(() -> run(classNames, gen), "HuntBugs class prefetcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run(List<String> classNames, int gen) {
+        for (int i = 0; i < classNames.size(); i++) {
+            // Loaders are already there
+            if (i < progress)
+                continue;
+            String className = classNames.get(i);
+            if (!put(gen, i, className, read(className)))
+                return;
+            for (String nestedName : nestedClasses.apply(className)) {
+                if (!put(gen, i, nestedName, read(nestedName)))
+                    return;
+            }
+        }
+    }
+
+    private byte[] read(String internalName) {
+        try {
+            return Files.readAllBytes(root.resolve(internalName + ".class"));
+        } catch (IOException e) {
+            // Missing or unreadable file is handled by the type loader itself
+            return null;
+        }
+    }
+
+    private synchronized boolean put(int gen, int position, String internalName, byte[] data) {
+        if (gen != generation)
+            return false;
+        if (data == null)
+            return true;
+        while (!pool.isEmpty() && poolBytes + data.length > maxBytes) {
+            dropStale();
+            if (pool.isEmpty() || poolBytes + data.length <= maxBytes)
+                break;
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                return false;
+            }
+            if (gen != generation)
+                return false;
+        }
+        pool.put(internalName, new Entry(position, data));
+        poolBytes += data.length;
+        return true;
+    }
+
+    private void dropStale() {
+        Iterator<Entry> it = pool.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.position < progress - STALE_DISTANCE) {
+                poolBytes -= entry.data.length;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Fills the buffer with the prefetched class if available
+     * 
+     * @param internalName name of the class to load
+     * @param buffer buffer to fill
+     * @return true if the class was prefetched
+     */
+    boolean tryLoadType(String internalName, Buffer buffer) {
+        byte[] data = take(internalName);
+        if (data == null)
+            return false;
+        buffer.reset(data.length);
+        System.arraycopy(data, 0, buffer.array(), 0, data.length);
+        buffer.position(0);
+        return true;
+    }
+
+    private synchronized byte[] take(String internalName) {
+        Entry entry = pool.remove(internalName);
+        int position = entry == null ? positions.getOrDefault(internalName, -1) : entry.position;
+        if (position > progress) {
+            progress = position;
+        } else if (entry == null) {
+            return null;
+        }
+        if (entry != null)
+            poolBytes -= entry.data.length;
+        notifyAll();
+        return entry == null ? null : entry.data;
+    }
+}
@@ -15,25 +15,119 @@
  */
 package one.util.huntbugs.repo;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import com.strobel.assembler.metadata.CompositeTypeLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import com.strobel.assembler.metadata.Buffer;
 import com.strobel.assembler.metadata.ITypeLoader;
 
 /**
+ * Repository which consists of several repositories in the lookup order. Type lookups are dispatched by the index
+ * of class names, so only the repository which has the class (and the repositories which cannot list their classes)
+ * are probed. Names which were not found are remembered.
+ * 
  * @author lan
  *
  */
 public class CompositeRepository implements Repository {
     private final List<Repository> repos;
+    private volatile ClassIndex index;
+
+    private static class ClassIndex {
+        // class name -> position of the first indexed repository which has it
+        final Map<String, Integer> owners = new HashMap<>();
+        // positions of the repositories which cannot list their classes
+        final int[] unindexed;
+        final Set<String> missing = ConcurrentHashMap.newKeySet();
+
+        ClassIndex(List<Repository> repos) {
+            List<Integer> unindexedList = new ArrayList<>();
+            for (int i = repos.size() - 1; i >= 0; i--) {
+                Set<String> names = repos.get(i).getClassNames();
+                if (names == null) {
+                    unindexedList.add(0, i);
+                } else {
+                    for (String name : names)
+                        owners.put(name, i);
+                }
+            }
+            unindexed = unindexedList.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private static class IndexedTypeLoader implements ITypeLoader {
+        private final ClassIndex index;
+        private final ITypeLoader[] loaders;
+
+        IndexedTypeLoader(ClassIndex index, ITypeLoader[] loaders) {
+            this.index = index;
+            this.loaders = loaders;
+        }
+
+        @Override
+        public boolean tryLoadType(String internalName, Buffer buffer) {
+            if (index.missing.contains(internalName))
+                return false;
+            int owner = index.owners.getOrDefault(internalName, loaders.length);
+            for (int i : index.unindexed) {
+                if (i > owner)
+                    break;
+                if (loaders[i].tryLoadType(internalName, buffer))
+                    return true;
+            }
+            if (owner < loaders.length) {
+                // Normally the owner has it, but probe the rest in order like CompositeTypeLoader does
+                for (int i = owner; i < loaders.length; i++) {
+                    if (loaders[i].tryLoadType(internalName, buffer))
+                        return true;
+                }
+            }
+            index.missing.add(internalName);
+            return false;
+        }
+    }
 
     public CompositeRepository(List<Repository> repos) {
         this.repos = Objects.requireNonNull(repos);
     }
 
+    private ClassIndex getIndex() {
+        ClassIndex idx = index;
+        if (idx == null) {
+            synchronized (this) {
+                idx = index;
+                if (idx == null)
+                    index = idx = new ClassIndex(repos);
+            }
+        }
+        return idx;
+    }
+
     @Override
     public ITypeLoader createTypeLoader() {
-        return new CompositeTypeLoader(repos.stream().map(Repository::createTypeLoader).toArray(ITypeLoader[]::new));
+        return new IndexedTypeLoader(getIndex(), repos.stream().map(Repository::createTypeLoader).toArray(
+            ITypeLoader[]::new));
+    }
+
+    @Override
+    public Set<String> getClassNames() {
+        Set<String> names = new HashSet<>();
+        for(Repository repo : repos) {
+            Set<String> repoNames = repo.getClassNames();
+            if(repoNames == null)
+                return null;
+            names.addAll(repoNames);
+        }
+        return Collections.unmodifiableSet(names);
     }
 
     @Override
@@ -42,4 +136,15 @@ public class CompositeRepository implements Repository {
             repo.visit(rootPackage, visitor);
     }
 
+    @Override
+    public void prefetch(List<String> classNames) {
+        for(Repository repo : repos)
+            repo.prefetch(classNames);
+    }
+
+    @Override
+    public List<Path> getAuxJars() {
+        return repos.stream().flatMap(repo -> repo.getAuxJars().stream()).collect(Collectors.toList());
+    }
+
 }
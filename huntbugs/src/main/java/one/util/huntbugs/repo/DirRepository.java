@@ -16,71 +16,177 @@
 package one.util.huntbugs.repo;
 
 import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.nio.file.FileVisitResult;
-import java.nio.file.FileVisitor;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import com.strobel.assembler.metadata.ClasspathTypeLoader;
 import com.strobel.assembler.metadata.ITypeLoader;
 
 /**
+ * Directory repository. The directories are listed in parallel ahead of the visitor, but only after the visitor
+ * accepted their packages. The class files are read in advance when the loading order is known (see
+ * {@link #prefetch(List)}).
+ * 
  * @author lan
  *
  */
 public class DirRepository implements Repository {
+    private static final long PREFETCH_BYTES = 16 * 1024 * 1024;
+    // Listing is I/O bound, so it uses more threads than there are CPUs and does not occupy the common pool
+    private static final int IO_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    private static final ExecutorService IO_POOL = createPool();
+
     private final Path root;
+    // top-level class -> its nested classes, filled by visit
+    private final Map<String, Set<String>> nestedClasses = new ConcurrentHashMap<>();
+    private final ClassPrefetcher prefetcher;
+    private volatile Set<String> classNames;
 
     public DirRepository(Path root) {
         this.root = root;
+        this.prefetcher = new ClassPrefetcher(root, this::getNestedClasses, PREFETCH_BYTES);
+    }
+
+    private static ExecutorService createPool() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(IO_THREADS, IO_THREADS, 1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "HuntBugs directory lister");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private Collection<String> getNestedClasses(String className) {
+        return nestedClasses.getOrDefault(className, Collections.emptySet());
     }
 
     @Override
     public ITypeLoader createTypeLoader() {
-        return new ClasspathTypeLoader(root.toString());
+        ITypeLoader loader = new ClasspathTypeLoader(root.toString());
+        return (internalName, buffer) -> prefetcher.tryLoadType(internalName, buffer)
+            || loader.tryLoadType(internalName, buffer);
     }
 
     @Override
-    public void visit(String rootPackage, RepositoryVisitor visitor) {
-        Path path = root.resolve(rootPackage);
-        if(!Files.isDirectory(path))
-            return;
-        try {
-            Files.walkFileTree(path, new FileVisitor<Path>() {
+    public Set<String> getClassNames() {
+        Set<String> names = classNames;
+        if (names == null) {
+            visit("", new RepositoryVisitor() {
                 @Override
-                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                    String pkg = root.relativize(dir).toString().replace('\\', '/');
-                    if(visitor.visitPackage(pkg))
-                        return FileVisitResult.CONTINUE;
-                    return FileVisitResult.SKIP_SUBTREE;
+                public boolean visitPackage(String packageName) {
+                    return true;
                 }
 
                 @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                    if(file.getFileName().toString().endsWith(".class")) {
-                        String baseName = root.relativize(file).toString();
-                        if(!baseName.contains("$")) {
-                            baseName = baseName.substring(0, baseName.length() - ".class".length()).replace('\\', '/');
-                            visitor.visitClass(baseName);
-                        }
-                    }
-                    return FileVisitResult.CONTINUE;
+                public void visitClass(String className) {
                 }
+            });
+            names = classNames;
+        }
+        return names;
+    }
 
-                @Override
-                public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
-                    return FileVisitResult.CONTINUE;
+    @Override
+    public void prefetch(List<String> classNames) {
+        prefetcher.start(classNames);
+    }
+
+    /**
+     * Entries of the single directory in the directory stream order
+     */
+    private static class Listing {
+        final Path dir;
+        final List<Path> files = new ArrayList<>();
+        final List<Path> subDirs = new ArrayList<>();
+
+        Listing(Path dir) {
+            this.dir = dir;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path path : stream) {
+                    (isDirectory(path) ? subDirs : files).add(path);
                 }
+            } catch (IOException e) {
+                // Skip unreadable directory
+            }
+        }
 
-                @Override
-                public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
-                    return FileVisitResult.CONTINUE;
+        private static boolean isDirectory(Path path) {
+            try {
+                // Symbolic links are not followed
+                return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isDirectory();
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+
+    private static CompletableFuture<Listing> list(Path dir) {
+        return CompletableFuture.supplyAsync(() -> new Listing(dir), IO_POOL);
+    }
+
+    /**
+     * Visits the packages in breadth-first order. The subdirectories of accepted packages are listed in background
+     * while the visitor processes the directories listed before.
+     */
+    @Override
+    public void visit(String rootPackage, RepositoryVisitor visitor) {
+        Path path = root.resolve(rootPackage);
+        if(!Files.isDirectory(path) || !visitor.visitPackage(toPackage(path)))
+            return;
+        boolean complete = true;
+        Set<String> names = new HashSet<>();
+        Deque<CompletableFuture<Listing>> queue = new ArrayDeque<>();
+        queue.add(list(path));
+        while(!queue.isEmpty()) {
+            Listing listing = queue.poll().join();
+            for(Path subDir : listing.subDirs) {
+                if(visitor.visitPackage(toPackage(subDir)))
+                    queue.add(list(subDir));
+                else
+                    complete = false;
+            }
+            for(Path file : listing.files) {
+                if(file.getFileName().toString().endsWith(".class")) {
+                    String baseName = root.relativize(file).toString();
+                    baseName = baseName.substring(0, baseName.length() - ".class".length()).replace('\\', '/');
+                    names.add(baseName);
+                    int pos = baseName.indexOf('$');
+                    if(pos == -1) {
+                        visitor.visitClass(baseName);
+                    } else {
+                        nestedClasses.computeIfAbsent(baseName.substring(0, pos), k -> ConcurrentHashMap.newKeySet()).add(
+                            baseName);
+                    }
                 }
-            });
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+            }
+        }
+        if (rootPackage.isEmpty() && complete && classNames == null) {
+            // The whole tree was listed anyway
+            classNames = Collections.unmodifiableSet(names);
         }
     }
+
+    private String toPackage(Path dir) {
+        return root.relativize(dir).toString().replace('\\', '/');
+    }
 }
@@ -15,7 +15,14 @@
  */
 package one.util.huntbugs.repo;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -23,42 +30,81 @@ import com.strobel.assembler.metadata.ITypeLoader;
 import com.strobel.assembler.metadata.JarTypeLoader;
 
 /**
+ * Jar file repository. The jar is memory-mapped when possible, otherwise (ZIP64 archives) it's read via
+ * {@link JarFile}.
+ * 
  * @author lan
  *
  */
 public class JarRepository implements Repository {
+    private final MappedJar mappedJar;
     private final JarFile file;
+    private volatile Set<String> classNames;
+
+    public JarRepository(Path path) throws IOException {
+        this.mappedJar = MappedJar.open(path);
+        this.file = mappedJar == null ? new JarFile(path.toFile()) : null;
+    }
 
+    /**
+     * Creates the repository which reads the classes via given {@link JarFile} without memory-mapping.
+     * 
+     * @param file jar file
+     * @deprecated use {@link #JarRepository(Path)} which memory-maps the jar when possible
+     */
+    @Deprecated
     public JarRepository(JarFile file) {
+        this.mappedJar = null;
         this.file = file;
     }
 
     @Override
     public ITypeLoader createTypeLoader() {
-        return new JarTypeLoader(file);
+        return mappedJar == null ? new JarTypeLoader(file) : mappedJar.createTypeLoader();
+    }
+
+    private List<String> getNames() {
+        if (mappedJar != null)
+            return mappedJar.getNames();
+        List<String> names = new ArrayList<>();
+        Enumeration<JarEntry> entries = file.entries();
+        while(entries.hasMoreElements())
+            names.add(entries.nextElement().getName());
+        return names;
+    }
+
+    @Override
+    public Set<String> getClassNames() {
+        Set<String> names = classNames;
+        if (names == null) {
+            names = new HashSet<>();
+            for(String name : getNames()) {
+                if(name.endsWith(".class"))
+                    names.add(name.substring(0, name.length()-".class".length()));
+            }
+            classNames = names = Collections.unmodifiableSet(names);
+        }
+        return names;
     }
 
     @Override
     public void visit(String rootPackage, RepositoryVisitor visitor) {
-        Enumeration<JarEntry> entries = file.entries();
         String skipPrefix = null;
-        while(entries.hasMoreElements()) {
-            JarEntry entry = entries.nextElement();
-            if(!rootPackage.isEmpty() && !entry.getName().startsWith(rootPackage+"/") && !entry.getName().equals(rootPackage))
+        for(String name : getNames()) {
+            if(!rootPackage.isEmpty() && !name.startsWith(rootPackage+"/") && !name.equals(rootPackage))
                 continue;
             if(skipPrefix != null) {
-                if(entry.getName().startsWith(skipPrefix))
+                if(name.startsWith(skipPrefix))
                     continue;
                 skipPrefix = null;
             }
-            if(entry.isDirectory()) {
-                if(!visitor.visitPackage(entry.getName())) {
-                    skipPrefix = entry.getName()+"/";
+            if(name.endsWith("/")) {
+                if(!visitor.visitPackage(name)) {
+                    skipPrefix = name+"/";
                 }
             } else {
-                if(entry.getName().endsWith(".class")) {
-                    String className = entry.getName();
-                    className = className.substring(0, className.length()-".class".length());
+                if(name.endsWith(".class")) {
+                    String className = name.substring(0, name.length()-".class".length());
                     if(!className.contains("$"))
                         visitor.visitClass(className);
                 }
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.repo;
+
+import java.io.IOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.strobel.assembler.metadata.Buffer;
+import com.strobel.assembler.metadata.ITypeLoader;
+
+/**
+ * Memory-mapped jar file. The central directory is indexed once, class bytes are copied from the mapping or inflated
+ * from it directly into the type loader buffer.
+ * 
+ * @author lan
+ *
+ */
+class MappedJar {
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_HEADER = 0x06054b50;
+    private static final int END_SIZE = 22;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private static final ReferenceQueue<Loader> RELEASED_LOADERS = new ReferenceQueue<>();
+    // Keeps the references reachable until they are enqueued
+    private static final Set<InflaterReference> INFLATERS = ConcurrentHashMap.newKeySet();
+
+    private final ByteBuffer data;
+    private final List<String> names;
+    private final Map<String, Entry> entries;
+
+    private static class Entry {
+        final int method;
+        final int compressedSize;
+        final int size;
+        final int headerOffset;
+
+        Entry(int method, int compressedSize, int size, int headerOffset) {
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.headerOffset = headerOffset;
+        }
+    }
+
+    private MappedJar(ByteBuffer data, List<String> names, Map<String, Entry> entries) {
+        this.data = data;
+        this.names = names;
+        this.entries = entries;
+    }
+
+    /**
+     * @param path jar file
+     * @return mapped jar or null if the file cannot be mapped (ZIP64 archive or too big file)
+     * @throws IOException if the file cannot be read or it's not a valid jar
+     */
+    static MappedJar open(Path path) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                return null;
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        int end = findEnd(data);
+        if (end < 0)
+            throw new IOException("Not a jar file: " + path);
+        int count = data.getShort(end + 10) & 0xFFFF;
+        long offset = data.getInt(end + 16) & 0xFFFFFFFFL;
+        if (count == 0xFFFF || offset == 0xFFFFFFFFL)
+            return null;
+        List<String> names = new ArrayList<>(count);
+        Map<String, Entry> entries = new HashMap<>(count * 2);
+        int pos = (int) offset;
+        byte[] nameBytes = new byte[256];
+        for (int i = 0; i < count; i++) {
+            if (pos < 0 || pos + 46 > end || data.getInt(pos) != CENTRAL_HEADER)
+                throw new IOException("Invalid central directory: " + path);
+            int nameLength = data.getShort(pos + 28) & 0xFFFF;
+            int extraLength = data.getShort(pos + 30) & 0xFFFF;
+            int commentLength = data.getShort(pos + 32) & 0xFFFF;
+            long compressedSize = data.getInt(pos + 20) & 0xFFFFFFFFL;
+            long size = data.getInt(pos + 24) & 0xFFFFFFFFL;
+            long headerOffset = data.getInt(pos + 42) & 0xFFFFFFFFL;
+            if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || headerOffset == 0xFFFFFFFFL)
+                return null;
+            if (pos + 46 + nameLength + extraLength + commentLength > end)
+                throw new IOException("Invalid central directory: " + path);
+            if (nameBytes.length < nameLength)
+                nameBytes = new byte[nameLength];
+            ByteBuffer nameBuf = data.duplicate();
+            nameBuf.position(pos + 46);
+            nameBuf.get(nameBytes, 0, nameLength);
+            String name = new String(nameBytes, 0, nameLength, StandardCharsets.UTF_8);
+            names.add(name);
+            // The first entry wins like in ZipFile
+            entries.putIfAbsent(name, new Entry(data.getShort(pos + 10) & 0xFFFF, (int) compressedSize, (int) size,
+                    (int) headerOffset));
+            pos += 46 + nameLength + extraLength + commentLength;
+        }
+        return new MappedJar(data, Collections.unmodifiableList(names), entries);
+    }
+
+    private static int findEnd(ByteBuffer data) {
+        int min = Math.max(0, data.limit() - END_SIZE - 0xFFFF);
+        for (int pos = data.limit() - END_SIZE; pos >= min; pos--) {
+            if (data.getInt(pos) == END_HEADER)
+                return pos;
+        }
+        return -1;
+    }
+
+    /**
+     * @return names of all the entries in the central directory order
+     */
+    List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * @return new type loader. Loaders are not thread-safe, but several loaders may read the same jar concurrently.
+     */
+    ITypeLoader createTypeLoader() {
+        endReleasedInflaters();
+        return new Loader();
+    }
+
+    private static void endReleasedInflaters() {
+        Reference<? extends Loader> ref;
+        while ((ref = RELEASED_LOADERS.poll()) != null) {
+            INFLATERS.remove(ref);
+            ((InflaterReference) ref).inflater.end();
+        }
+    }
+
+    /**
+     * Loaders are never closed explicitly, so the native memory of their inflaters is released when the loaders
+     * become unreachable.
+     */
+    private static class InflaterReference extends PhantomReference<Loader> {
+        final Inflater inflater;
+
+        InflaterReference(Loader loader, Inflater inflater) {
+            super(loader, RELEASED_LOADERS);
+            this.inflater = inflater;
+        }
+    }
+
+    private class Loader implements ITypeLoader {
+        private final Inflater inflater = new Inflater(true);
+        private byte[] input = new byte[8192];
+
+        Loader() {
+            INFLATERS.add(new InflaterReference(this, inflater));
+        }
+
+        @Override
+        public boolean tryLoadType(String internalName, Buffer buffer) {
+            Entry entry = entries.get(internalName + ".class");
+            if (entry == null)
+                return false;
+            try {
+                read(entry, buffer);
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("Unable to read " + internalName, e);
+            }
+            return true;
+        }
+
+        private void read(Entry entry, Buffer buffer) throws DataFormatException {
+            int pos = entry.headerOffset;
+            if (pos < 0 || pos > data.limit() - 30 || data.getInt(pos) != LOCAL_HEADER)
+                throw new DataFormatException("Invalid local header");
+            pos += 30 + (data.getShort(pos + 26) & 0xFFFF) + (data.getShort(pos + 28) & 0xFFFF);
+            if (entry.compressedSize < 0 || entry.size < 0 || pos > data.limit() - entry.compressedSize)
+                throw new DataFormatException("Entry exceeds the file");
+            ByteBuffer slice = data.duplicate();
+            slice.position(pos);
+            buffer.reset(entry.size);
+            switch (entry.method) {
+            case STORED:
+                if (entry.size != entry.compressedSize)
+                    throw new DataFormatException("Invalid stored entry size");
+                slice.get(buffer.array(), 0, entry.size);
+                break;
+            case DEFLATED:
+                // Java 8 Inflater accepts only arrays, so compressed bytes go through the reusable one. Raw inflater
+                // may need an extra dummy byte after the input.
+                if (input.length <= entry.compressedSize)
+                    input = new byte[Math.max(entry.compressedSize + 1, input.length * 2)];
+                slice.get(input, 0, entry.compressedSize);
+                input[entry.compressedSize] = 0;
+                inflate(entry, buffer);
+                break;
+            default:
+                throw new DataFormatException("Unsupported compression method: " + entry.method);
+            }
+            buffer.position(0);
+        }
+
+        private void inflate(Entry entry, Buffer buffer) throws DataFormatException {
+            inflater.reset();
+            inflater.setInput(input, 0, entry.compressedSize + 1);
+            int size = 0;
+            while (size < entry.size) {
+                int n = inflater.inflate(buffer.array(), size, entry.size - size);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                    throw new DataFormatException("Unexpected end of entry");
+                size += n;
+            }
+        }
+    }
+}
@@ -19,10 +19,12 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
-import java.util.jar.JarFile;
+import java.util.Set;
 
 import com.strobel.assembler.metadata.ITypeLoader;
 
@@ -35,6 +37,32 @@ public interface Repository {
 
     void visit(String rootPackage, RepositoryVisitor visitor);
 
+    /**
+     * @return jar files which provide the auxiliary (not visited) classes of this repository in the type loader lookup
+     *         order. Used to store the type database snapshots for them.
+     */
+    default List<Path> getAuxJars() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return internal names of all the classes (including nested) this repository can load or null if they cannot be
+     *         listed. Used to dispatch the type lookups without probing every repository.
+     */
+    default Set<String> getClassNames() {
+        return null;
+    }
+
+    /**
+     * Hints that given top-level classes are going to be loaded approximately in the given order, so the repository
+     * may read them in advance. The new hint replaces the previous one, the empty list stops prefetching.
+     * 
+     * @param classNames internal names of the classes
+     */
+    default void prefetch(List<String> classNames) {
+        // no prefetching by default
+    }
+
     public static Repository createSelfRepository() {
         List<Repository> repos = new ArrayList<>();
         try {
@@ -51,8 +79,8 @@ public interface Repository {
         }
         if (repos.isEmpty()) {
             try {
-                repos.add(new JarRepository(new JarFile(CompositeRepository.class.getProtectionDomain().getCodeSource()
-                        .getLocation().toURI().getPath())));
+                repos.add(new JarRepository(new File(CompositeRepository.class.getProtectionDomain().getCodeSource()
+                        .getLocation().toURI()).toPath()));
             } catch (IOException e) {
                 throw new RuntimeException(e);
             } catch (URISyntaxException e) {
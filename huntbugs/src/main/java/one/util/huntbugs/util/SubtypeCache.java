@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.util;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.strobel.assembler.metadata.TypeReference;
+
+import one.util.huntbugs.db.Hierarchy;
+import one.util.huntbugs.db.Hierarchy.TypeHierarchy;
+
+/**
+ * Per-analysis cache of the subtype relations used by {@link Types#isInstance(TypeReference, String)} and
+ * {@link Types#getBaseTypes(TypeReference)}. The relations are taken from the {@link Hierarchy} database when all the
+ * involved types are known there, otherwise they are calculated by resolving the types. Subtype answers depend only on
+ * the internal names and live for the whole analysis, while base type chains hold the resolved types and live only
+ * while a single class is analyzed.
+ * 
+ * @author lan
+ *
+ */
+public class SubtypeCache {
+    private static final ThreadLocal<SubtypeCache> current = new ThreadLocal<>();
+
+    private final Hierarchy hierarchy;
+    // wanted type -> type -> is instance
+    private final Map<String, Map<String, Boolean>> instances = new ConcurrentHashMap<>();
+    // Resolved types are bound to the worker metadata system which may evict them between the classes, thus base
+    // types are cached per thread only while the single action runs
+    private final ThreadLocal<Map<String, List<TypeReference>>> baseTypes = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * @param hierarchy populated hierarchy database (may be null). It must not be updated while the cache is used.
+     */
+    public SubtypeCache(Hierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+    }
+
+    /**
+     * Runs the action using this cache for the type queries made in the current thread. Resolved base types are
+     * dropped after the action, so the cache does not keep the types which the metadata system has evicted.
+     * 
+     * @param action action to run
+     */
+    public void run(Runnable action) {
+        SubtypeCache prev = current.get();
+        current.set(this);
+        try {
+            action.run();
+        } finally {
+            baseTypes.remove();
+            if (prev == null)
+                current.remove();
+            else
+                current.set(prev);
+        }
+    }
+
+    static SubtypeCache current() {
+        return current.get();
+    }
+
+    /**
+     * @param type type to check
+     * @return true if the queries about given type depend only on its internal name
+     */
+    static boolean isCacheable(TypeReference type) {
+        return !type.isGenericParameter() && !type.isWildcardType() && !type.isCompoundType();
+    }
+
+    boolean isInstance(TypeReference type, String wantedType) {
+        Map<String, Boolean> map = instances.get(wantedType);
+        if (map == null) {
+            map = new ConcurrentHashMap<>();
+            Map<String, Boolean> oldMap = instances.putIfAbsent(wantedType, map);
+            if (oldMap != null)
+                map = oldMap;
+        }
+        String name = type.getInternalName();
+        Boolean result = map.get(name);
+        if (result == null) {
+            // Object is not linked in the Hierarchy
+            if (hierarchy != null && !wantedType.equals("java/lang/Object"))
+                result = isInstance(name, wantedType);
+            if (result == null)
+                result = Types.isSubType(type, wantedType);
+            map.put(name, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return true or false if given type and its supertypes are known in the hierarchy, null otherwise
+     */
+    private Boolean isInstance(String name, String wantedType) {
+        TypeHierarchy th = hierarchy.get(name);
+        if (th == null || !th.isFullyResolved())
+            return null;
+        // All the supertypes are in the hierarchy
+        TypeHierarchy wantedTh = hierarchy.get(wantedType);
+        return wantedTh != null && th.isSubTypeOf(wantedTh);
+    }
+
+    List<TypeReference> getBaseTypes(TypeReference type) {
+        String name = type.getInternalName();
+        return baseTypes.get().computeIfAbsent(name, k -> Collections.unmodifiableList(Types.resolveBaseTypes(type)));
+    }
+}
@@ -44,7 +44,20 @@ public class Types {
         "java/util/Vector", "java/util/Date", "java/sql/Date", "java/sql/Timestamp", "java/awt/Point",
         "java/awt/Dimension", "java/awt/Rectangle"));
 
+    /**
+     * @param input type
+     * @return superclasses of given type starting from the root (usually java.lang.Object) and ending with input itself
+     */
     public static List<TypeReference> getBaseTypes(TypeReference input) {
+        SubtypeCache cache = SubtypeCache.current();
+        if (cache == null || !SubtypeCache.isCacheable(input))
+            return resolveBaseTypes(input);
+        List<TypeReference> result = new ArrayList<>(cache.getBaseTypes(input));
+        result.set(result.size() - 1, input);
+        return result;
+    }
+
+    static List<TypeReference> resolveBaseTypes(TypeReference input) {
         List<TypeReference> result = new ArrayList<>();
         while (true) {
             result.add(input);
@@ -68,6 +81,13 @@ public class Types {
             return false;
         if (type.getInternalName().equals(wantedType))
             return true;
+        SubtypeCache cache = SubtypeCache.current();
+        if (cache == null || !SubtypeCache.isCacheable(type))
+            return isSubType(type, wantedType);
+        return cache.isInstance(type, wantedType);
+    }
+
+    static boolean isSubType(TypeReference type, String wantedType) {
         TypeDefinition td = type.resolve();
         if (td == null)
             return false;
@@ -15,6 +15,9 @@
  */
 package one.util.huntbugs.warning;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import com.strobel.core.StringUtilities;
 
 import one.util.huntbugs.warning.WarningAnnotation.MemberInfo;
@@ -54,6 +57,28 @@ public class Formatter {
         return format(msgs.getMessagesForType(warning.getType()).getLongDescription(), warning, FORMAT_HTML);
     }
 
+    /**
+     * @param type warning type
+     * @return HTML long description of given type where the <code>$FIELD$</code> placeholders are not substituted
+     */
+    public String getLongDescriptionTemplate(WarningType type) {
+        return msgs.getMessagesForType(type).getLongDescription();
+    }
+
+    /**
+     * @param warning warning to format the values of
+     * @return map from every placeholder of the {@link #getLongDescriptionTemplate(WarningType) long description
+     *         template} (without the dollar signs) to its formatted HTML value
+     */
+    public Map<String, String> getLongDescriptionValues(Warning warning) {
+        String[] fields = getLongDescriptionTemplate(warning.getType()).split("\\$", -1);
+        Map<String, String> values = new LinkedHashMap<>();
+        for (int i = 1; i < fields.length; i += 2) {
+            values.computeIfAbsent(fields[i], field -> formatField(field, warning, FORMAT_HTML));
+        }
+        return values;
+    }
+
     private String format(String description, Warning warning, String format) {
         String[] fields = description.split("\\$", -1);
         if (fields.length == 1)
@@ -63,24 +88,27 @@ public class Formatter {
             if (i % 2 == 0) {
                 result.append(fields[i]);
             } else {
-                String key = fields[i];
-                String f = format;
-                int pos = key.indexOf(':');
-                if (pos > 0) {
-                    f = key.substring(pos + 1);
-                    key = key.substring(0, pos);
-                }
-                WarningAnnotation<?> anno = warning.getAnnotation(key);
-                if (anno == null) {
-                    result.append('(').append(key).append(')');
-                } else {
-                    result.append(formatValue(anno.getValue(), f));
-                }
+                result.append(formatField(fields[i], warning, format));
             }
         }
         return result.toString();
     }
 
+    private String formatField(String field, Warning warning, String format) {
+        String key = field;
+        String f = format;
+        int pos = key.indexOf(':');
+        if (pos > 0) {
+            f = key.substring(pos + 1);
+            key = key.substring(0, pos);
+        }
+        WarningAnnotation<?> anno = warning.getAnnotation(key);
+        if (anno == null) {
+            return "(" + key + ")";
+        }
+        return formatValue(anno.getValue(), f);
+    }
+
     public String formatValue(Object value, String format) {
         if (value instanceof MemberInfo) {
             return formatMemberInfo((MemberInfo) value, format);
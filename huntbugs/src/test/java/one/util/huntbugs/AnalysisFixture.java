@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.function.Consumer;
+
+import one.util.huntbugs.analysis.AnalysisOptions;
+import one.util.huntbugs.analysis.Context;
+import one.util.huntbugs.repo.Repository;
+
+/**
+ * Analysis of the test data classes shared by the tests which check the analysis options.
+ * 
+ * @author lan
+ *
+ */
+public class AnalysisFixture {
+    public static final String TEST_PACKAGE = "one/util/huntbugs/testdata";
+
+    private static Context baseline;
+    private static String baselineReport;
+
+    /**
+     * @param setup changes the default options
+     * @return context after the test data classes are analyzed
+     */
+    public static Context analyze(Consumer<AnalysisOptions> setup) {
+        AnalysisOptions options = new AnalysisOptions();
+        setup.accept(options);
+        Context ctx = new Context(Repository.createSelfRepository(), options);
+        ctx.analyzePackage(TEST_PACKAGE);
+        return ctx;
+    }
+
+    /**
+     * @param ctx analyzed context
+     * @return reported warnings followed by the errors
+     */
+    public static String report(Context ctx) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream ps = new PrintStream(out);
+        ctx.reportWarnings(ps);
+        ctx.reportErrors(ps);
+        ps.flush();
+        return out.toString();
+    }
+
+    /**
+     * @return context after the test data classes are analyzed with the default options. The analysis is performed
+     *         once and shared by all the tests, so the context must not be closed.
+     */
+    public static synchronized Context baseline() {
+        if (baseline == null) {
+            baseline = analyze(options -> {});
+            baselineReport = report(baseline);
+        }
+        return baseline;
+    }
+
+    /**
+     * @return report of the {@link #baseline()} analysis
+     */
+    public static synchronized String defaultReport() {
+        baseline();
+        return baselineReport;
+    }
+
+    /**
+     * Analyzes the test data classes and checks that the report is the same as with the default options
+     * 
+     * @param setup changes the default options
+     * @return closed context after the analysis
+     */
+    public static Context checkSameResult(Consumer<AnalysisOptions> setup) {
+        String expected = defaultReport();
+        assertFalse(expected.isEmpty());
+        Context ctx = analyze(setup);
+        try {
+            assertEquals(expected, report(ctx));
+        } finally {
+            ctx.close();
+        }
+        return ctx;
+    }
+}
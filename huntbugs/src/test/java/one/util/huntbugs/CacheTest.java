@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.strobel.assembler.metadata.Buffer;
+import com.strobel.assembler.metadata.ITypeLoader;
+import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.assembler.metadata.TypeDefinition;
+
+import one.util.huntbugs.analysis.Context;
+import one.util.huntbugs.analysis.WarningCache;
+import one.util.huntbugs.repo.Repository;
+import one.util.huntbugs.warning.Warning;
+import one.util.huntbugs.warning.WarningAnnotation;
+import one.util.huntbugs.warning.WarningType;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author lan
+ *
+ */
+public class CacheTest {
+    private static final String BASE = "one/util/huntbugs/CacheTest$Base";
+    private static final String DERIVED = "one/util/huntbugs/CacheTest$Derived";
+    private static final String INNER = "one/util/huntbugs/CacheTest$Derived$Inner";
+    private static final WarningType TYPE = new WarningType("Test", "Type", 60);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static class Base {
+    }
+
+    static class Derived extends Base {
+        class Inner {
+        }
+    }
+
+    /**
+     * Loads the test classes appending a byte to the given one
+     */
+    private static ITypeLoader createLoader(String changedClass) {
+        ITypeLoader loader = Repository.createSelfRepository().createTypeLoader();
+        return (internalName, buffer) -> {
+            if (!loader.tryLoadType(internalName, buffer))
+                return false;
+            if (internalName.equals(changedClass)) {
+                byte[] bytes = Arrays.copyOf(buffer.array(), buffer.size() + 1);
+                buffer.reset(bytes.length);
+                buffer.putByteArray(bytes, 0, bytes.length);
+                buffer.position(0);
+            }
+            return true;
+        };
+    }
+
+    private static WarningCache createCache(Path path, String fingerprint, String changedClass) {
+        return new WarningCache(path, fingerprint, name -> name.equals(TYPE.getName()) ? TYPE : null, null,
+                () -> createLoader(changedClass));
+    }
+
+    private static TypeDefinition derived() {
+        return new MetadataSystem(createLoader(null)).lookupType(DERIVED).resolve();
+    }
+
+    private static List<Warning> lookUp(Path path, String fingerprint, String changedClass) {
+        WarningCache cache = createCache(path, fingerprint, changedClass);
+        return cache.get(DERIVED, cache.getKey(derived()));
+    }
+
+    private static Path createCacheFile(List<Warning> warnings) throws IOException {
+        Path path = Files.createTempFile("huntbugs", ".cache");
+        WarningCache cache = createCache(path, "test", null);
+        cache.put(DERIVED, cache.getKey(derived()), warnings);
+        cache.save();
+        return path;
+    }
+
+    @Test
+    public void testHit() throws IOException {
+        Warning warning = new Warning(TYPE, 10, Arrays.asList(new WarningAnnotation<>("TYPE", DERIVED),
+            new WarningAnnotation<>("NUMBER", 42)));
+        Path path = createCacheFile(Collections.singletonList(warning));
+        try {
+            List<Warning> cached = lookUp(path, "test", null);
+            assertNotNull(cached);
+            assertEquals(1, cached.size());
+            assertEquals(warning.toString(), cached.get(0).toString());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testInvalidation() throws IOException {
+        Path path = createCacheFile(Collections.emptyList());
+        try {
+            assertNotNull(lookUp(path, "test", null));
+            assertNull(lookUp(path, "test", DERIVED));
+            assertNull(lookUp(path, "test", INNER));
+            assertNull(lookUp(path, "test", BASE));
+            assertNull(lookUp(path, "changed settings", null));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testSaveFailure() throws IOException {
+        Path path = createCacheFile(Collections.emptyList());
+        try {
+            // the cache file cannot be created inside a regular file
+            Path badPath = path.resolve("cache");
+            WarningCache cache = createCache(badPath, "test", null);
+            cache.put(DERIVED, cache.getKey(derived()), Collections.emptyList());
+            try {
+                cache.save();
+                fail("Exception expected");
+            } catch (IOException e) {
+                // expected
+            }
+            Context ctx = AnalysisFixture.analyze(options -> options.cacheFile = badPath.toString());
+            assertTrue(ctx.getStat("CachedClasses.Total") > 0);
+            assertEquals(1, ctx.getErrorCount());
+            // the previous cache is still valid
+            assertNotNull(lookUp(path, "test", null));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testAnalysis() throws IOException {
+        String cacheFile = folder.newFolder().toPath().resolve("cache").toString();
+        AnalysisFixture.checkSameResult(options -> options.cacheFile = cacheFile);
+        Context cached = AnalysisFixture.checkSameResult(options -> options.cacheFile = cacheFile);
+        // classes with non-serializable warning values are analyzed again
+        assertTrue(cached.getStat("CachedClasses") > 0);
+    }
+
+    @Test
+    public void testHashingLoader() {
+        Set<String> read = ConcurrentHashMap.newKeySet();
+        WarningCache cache = new WarningCache(Paths.get("nonexistent"), "test", name -> null, null, () -> {
+            ITypeLoader loader = createLoader(null);
+            return (internalName, buffer) -> read.add(internalName) && loader.tryLoadType(internalName, buffer);
+        });
+        MetadataSystem ms = new MetadataSystem(cache.createHashingLoader(createLoader(null)));
+        TypeDefinition derived = ms.lookupType(DERIVED).resolve();
+        String key = cache.getKey(derived);
+        assertEquals(createCache(Paths.get("nonexistent"), "test", null).getKey(derived()), key);
+        // the classes loaded by the analysis are not read again
+        assertFalse(read.toString(), read.contains(DERIVED));
+        assertFalse(read.toString(), read.contains(INNER));
+        assertFalse(read.toString(), read.contains(BASE));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import one.util.huntbugs.analysis.Context;
+import one.util.huntbugs.warning.Warning;
+import one.util.huntbugs.warning.rule.RegexRule;
+
+import org.junit.Test;
+
+/**
+ * Checks that the options which affect only the way the analysis is performed do not change its result.
+ * 
+ * @author lan
+ *
+ */
+public class EquivalenceTest {
+    private static List<String> warnings(Context ctx, String type) {
+        try (Stream<Warning> warnings = ctx.warnings()) {
+            return warnings.filter(w -> w.getType().getName().equals(type)).map(Warning::toString).collect(
+                Collectors.toList());
+        }
+    }
+
+    @Test
+    public void testSingleDetector() {
+        List<String> expected = warnings(AnalysisFixture.baseline(), "SelfComputation");
+        // The variable source annotations must not depend on whether other detectors request the dataflow
+        assertTrue(expected.stream().anyMatch(w -> w.contains("\tFIELD: ")));
+        Context ctx = AnalysisFixture.analyze(options -> options.setRule(new RegexRule("(?!SelfComputation$).*",
+            -100)));
+        try {
+            assertEquals(expected, warnings(ctx, "SelfComputation"));
+        } finally {
+            ctx.close();
+        }
+    }
+
+    @Test
+    public void testDataflowSkipped() {
+        Context ctx = AnalysisFixture.baseline();
+        // The dataflow is built on demand only, so it's not needed for every method
+        assertTrue(ctx.getStat("ValuesFlowSkipped") > 0);
+        assertTrue(ctx.getStat("ValuesFlowSkipped") < ctx.getStat("ValuesFlowSkipped.Total"));
+    }
+
+    @Test
+    public void testThreads() {
+        AnalysisFixture.checkSameResult(options -> options.threads = 4);
+    }
+}
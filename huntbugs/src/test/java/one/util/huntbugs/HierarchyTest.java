@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+import one.util.huntbugs.db.Hierarchy;
+import one.util.huntbugs.db.Hierarchy.TypeHierarchy;
+
+import org.junit.Test;
+
+/**
+ * @author lan
+ *
+ */
+public class HierarchyTest {
+    private static void add(Hierarchy h, String name, String... supers) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(out);
+        dos.writeLong(0);
+        dos.writeShort(supers.length);
+        for (String s : supers)
+            dos.writeUTF(s);
+        h.readType(name, new DataInputStream(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    private static boolean isSubType(TypeHierarchy th, TypeHierarchy wanted, Set<TypeHierarchy> visited) {
+        if (th == wanted)
+            return true;
+        if (!visited.add(th))
+            return false;
+        return th.getSuperClasses().stream().anyMatch(sup -> isSubType(sup, wanted, visited));
+    }
+
+    @Test
+    public void testHierarchy() throws IOException {
+        Hierarchy h = new Hierarchy();
+        add(h, "a/I");
+        add(h, "a/J", "a/I");
+        add(h, "a/A", "a/I");
+        add(h, "a/B", "a/A", "a/J");
+        add(h, "b/C", "a/B");
+        add(h, "a/D", "a/A", "x/Unknown");
+        add(h, "a/E", "a/A", "a/I");
+        String[] names = { "a/I", "a/J", "a/A", "a/B", "b/C", "a/D", "a/E", "x/Unknown" };
+        for (String sub : names) {
+            for (String sup : names) {
+                TypeHierarchy subTh = h.get(sub), supTh = h.get(sup);
+                assertEquals(sub + " -> " + sup, isSubType(subTh, supTh, new HashSet<>()), subTh.isSubTypeOf(supTh));
+            }
+        }
+        assertTrue(h.get("a/B").isFullyResolved());
+        assertFalse(h.get("a/D").isFullyResolved());
+        assertFalse(h.get("x/Unknown").isFullyResolved());
+        assertTrue(h.get("a/B").hasSubClassesOutOfPackage());
+        assertTrue(h.get("a/A").hasSubClasses());
+        assertFalse(h.get("a/A").hasSubClassesOutOfPackage());
+        assertFalse(h.get("b/C").hasSubClasses());
+        assertEquals(2, h.get("a/E").getSuperClasses().size());
+
+        // Labels are recomputed after update
+        add(h, "b/F", "b/C", "a/J");
+        assertTrue(h.get("b/F").isSubTypeOf(h.get("a/I")));
+        assertFalse(h.get("a/E").isSubTypeOf(h.get("a/J")));
+        assertEquals(2, h.get("a/J").getSubClasses().size());
+    }
+
+    @Test
+    public void testRandomHierarchy() throws IOException {
+        Random r = new Random(1);
+        Hierarchy h = new Hierarchy();
+        int count = 300;
+        for (int i = 0; i < count; i++) {
+            // Types are added in order, so the links are acyclic; the first supertype is the tree parent
+            Set<String> supers = new LinkedHashSet<>();
+            int n = i == 0 ? 0 : r.nextInt(Math.min(i, 4));
+            for (int j = 0; j < n; j++)
+                supers.add("p" + r.nextInt(3) + "/T" + r.nextInt(i));
+            add(h, "p" + (i % 3) + "/T" + i, supers.toArray(new String[0]));
+        }
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < count; j++) {
+                TypeHierarchy sub = h.get("p" + (i % 3) + "/T" + i), sup = h.get("p" + (j % 3) + "/T" + j);
+                if (sub == null || sup == null)
+                    continue;
+                assertEquals(sub + " -> " + sup, isSubType(sub, sup, new HashSet<>()), sub.isSubTypeOf(sup));
+            }
+        }
+    }
+
+    @Test
+    public void testWideInterface() throws IOException {
+        Hierarchy h = new Hierarchy();
+        add(h, "java/io/Serializable");
+        int count = 100000;
+        for (int i = 0; i < count; i++) {
+            add(h, "a/C" + i, "a/Base", "java/io/Serializable");
+        }
+        add(h, "a/Base");
+        TypeHierarchy ser = h.get("java/io/Serializable");
+        assertTrue(h.get("a/C" + (count - 1)).isSubTypeOf(ser));
+        assertTrue(h.get("a/C" + (count - 1)).isSubTypeOf(h.get("a/Base")));
+        assertFalse(h.get("a/Base").isSubTypeOf(ser));
+        assertEquals(count, ser.getSubClasses().size());
+    }
+}
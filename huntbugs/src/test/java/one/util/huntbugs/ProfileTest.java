@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import one.util.huntbugs.analysis.Context;
+import one.util.huntbugs.registry.DetectorProfile;
+
+import org.junit.Test;
+
+/**
+ * @author lan
+ *
+ */
+public class ProfileTest {
+    @Test
+    public void testProfile() {
+        assertTrue(AnalysisFixture.baseline().getDetectorProfiles().isEmpty());
+        // Profiling must not change the analysis result
+        Context ctx = AnalysisFixture.checkSameResult(options -> options.profileDetectors = true);
+        List<DetectorProfile> profiles = ctx.getDetectorProfiles();
+        assertFalse(profiles.isEmpty());
+        for (int i = 1; i < profiles.size(); i++) {
+            assertTrue(profiles.get(i - 1).getTime() >= profiles.get(i).getTime());
+        }
+        for (DetectorProfile profile : profiles) {
+            assertTrue(profile.getName(), profile.getCalls() > 0);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ctx.reportStats(new PrintStream(out));
+        assertTrue(out.toString().contains("Detectors profile:\n\t" + profiles.get(0)));
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import one.util.huntbugs.analysis.FileWarningSink;
+import one.util.huntbugs.analysis.WarningSink;
+import one.util.huntbugs.warning.Warning;
+import one.util.huntbugs.warning.WarningAnnotation;
+import one.util.huntbugs.warning.WarningType;
+
+import org.junit.Test;
+
+/**
+ * @author lan
+ *
+ */
+public class WarningSinkTest {
+    private static final WarningType TYPE_A = new WarningType("Test", "TypeA", 80);
+    private static final WarningType TYPE_B = new WarningType("Test", "TypeB", 60);
+
+    private static WarningType getType(String name) {
+        return name.equals(TYPE_A.getName()) ? TYPE_A : name.equals(TYPE_B.getName()) ? TYPE_B : null;
+    }
+
+    private static List<Warning> generate(int count) {
+        Random r = new Random(1);
+        List<Warning> warnings = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Object value = i % 50 == 0 ? new Object() : (Object) i;
+            warnings.add(new Warning(r.nextBoolean() ? TYPE_A : TYPE_B, r.nextInt(5), Arrays.asList(
+                new WarningAnnotation<>("TYPE", "pkg/Class" + r.nextInt(10)), new WarningAnnotation<>("VALUE", value))));
+        }
+        return warnings;
+    }
+
+    private static List<String> read(WarningSink sink) {
+        try (Stream<Warning> stream = sink.warnings()) {
+            return stream.map(Warning::toString).collect(Collectors.toList());
+        }
+    }
+
+    private static long countFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void testMergeOrder() throws IOException {
+        List<Warning> warnings = generate(1000);
+        List<String> expected = warnings.stream().sorted(WarningSink.REPORT_ORDER).map(Warning::toString).collect(
+            Collectors.toList());
+        Path dir = Files.createTempDirectory("huntbugs");
+        try (FileWarningSink sink = new FileWarningSink(3, dir, WarningSinkTest::getType)) {
+            warnings.forEach(sink::add);
+            // runs of the same level are merged as soon as there are MAX_FAN_IN of them
+            assertTrue(countFiles(dir) < 2 * FileWarningSink.MAX_FAN_IN);
+            assertEquals(expected, read(sink));
+            assertTrue(countFiles(dir) < FileWarningSink.MAX_FAN_IN);
+            assertEquals(expected, read(sink));
+        } finally {
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testMergeWhileReading() throws IOException {
+        List<Warning> warnings = generate(3 * FileWarningSink.MAX_FAN_IN * 2);
+        List<Warning> first = warnings.subList(0, 30);
+        List<String> expectedFirst = first.stream().sorted(WarningSink.REPORT_ORDER).map(Warning::toString).collect(
+            Collectors.toList());
+        List<String> expected = warnings.stream().sorted(WarningSink.REPORT_ORDER).map(Warning::toString).collect(
+            Collectors.toList());
+        Path dir = Files.createTempDirectory("huntbugs");
+        try (FileWarningSink sink = new FileWarningSink(3, dir, WarningSinkTest::getType)) {
+            first.forEach(sink::add);
+            try (Stream<Warning> stream = sink.warnings()) {
+                Iterator<Warning> it = stream.iterator();
+                List<String> actualFirst = new ArrayList<>();
+                actualFirst.add(it.next().toString());
+                // the runs read by the open stream are merged, but not deleted
+                warnings.subList(first.size(), warnings.size()).forEach(sink::add);
+                long withOpenStream = countFiles(dir);
+                it.forEachRemaining(w -> actualFirst.add(w.toString()));
+                assertEquals(expectedFirst, actualFirst);
+                assertTrue(countFiles(dir) < withOpenStream);
+            }
+            assertEquals(expected, read(sink));
+        } finally {
+            assertEquals(0, countFiles(dir));
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testAnalysis() {
+        AnalysisFixture.checkSameResult(options -> options.maxWarningsInMemory = 3);
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        Path dir = Files.createTempDirectory("huntbugs");
+        try {
+            FileWarningSink sink = new FileWarningSink(10, dir, WarningSinkTest::getType);
+            generate(100).forEach(sink::add);
+            assertEquals(10, countFiles(dir));
+            Stream<Warning> open = sink.warnings();
+            assertTrue(open.iterator().hasNext());
+            sink.close();
+            assertEquals(0, countFiles(dir));
+        } finally {
+            Files.delete(dir);
+        }
+    }
+}
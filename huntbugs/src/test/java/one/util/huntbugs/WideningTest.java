@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs;
+
+import static org.junit.Assert.*;
+
+import one.util.huntbugs.analysis.Context;
+
+import org.junit.Test;
+
+/**
+ * @author lan
+ *
+ */
+public class WideningTest {
+    @Test
+    public void testWidening() {
+        assertEquals(0, AnalysisFixture.baseline().getStat("DivergedLoops"));
+        // TestLoopWidening loops do not converge without widening
+        Context ctx = AnalysisFixture.analyze(
+            options -> options.loopWideningIterations = options.loopTraversalIterations + 1);
+        ctx.close();
+        assertTrue(ctx.getStat("DivergedLoops") > 0);
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.analysis;
+
+import one.util.huntbugs.AnalysisFixture;
+
+import org.junit.Test;
+
+/**
+ * @author lan
+ *
+ */
+public class CachingMetadataSystemTest {
+    @Test
+    public void testSmallCache() {
+        // Types are evicted and read again between the classes, which must not change the analysis result
+        AnalysisFixture.checkSameResult(options -> options.maxTypeCacheSize = 64 * 1024);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.analysis;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import one.util.huntbugs.AnalysisFixture;
+import one.util.huntbugs.db.Hierarchy;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.assembler.metadata.TypeDefinition;
+
+/**
+ * @author lan
+ *
+ */
+public class DatabaseSnapshotTest {
+    private static final byte[] RECORD = { 1, 2, 3 };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path writeJar(String... classes) throws IOException {
+        Path jar = folder.getRoot().toPath().resolve("dep.jar");
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(jar))) {
+            for (String name : classes) {
+                zos.putNextEntry(new ZipEntry(name + ".class"));
+                zos.write(name.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return jar;
+    }
+
+    private static Set<String> files(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(f -> f.getFileName().toString()).filter(f -> f.endsWith(".snapshot")).collect(
+                Collectors.toCollection(TreeSet::new));
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path dir = folder.newFolder("snapshots").toPath();
+        Path jar = writeJar("a/A", "a/B", "a/B$Inner");
+        DatabaseSnapshot snapshot = DatabaseSnapshot.open(dir, jar, "sig");
+        assertTrue(snapshot.contains("a/A"));
+        assertTrue(snapshot.contains("a/B"));
+        assertFalse(snapshot.contains("a/B$Inner"));
+        assertFalse(snapshot.contains("a/C"));
+        assertNull(snapshot.get("a/A"));
+        snapshot.put("a/A", RECORD);
+        assertArrayEquals(RECORD, snapshot.get("a/A"));
+        snapshot.save();
+
+        DatabaseSnapshot reopened = DatabaseSnapshot.open(dir, jar, "sig");
+        assertArrayEquals(RECORD, reopened.get("a/A"));
+        assertNull(reopened.get("a/B"));
+        // the first generation is replaced by the second one
+        Set<String> files = files(dir);
+        assertEquals(1, files.size());
+        assertTrue(files.toString(), files.iterator().next().endsWith(".1.snapshot"));
+
+        reopened.put("a/B", new byte[0]);
+        reopened.save();
+        DatabaseSnapshot third = DatabaseSnapshot.open(dir, jar, "sig");
+        assertArrayEquals(RECORD, third.get("a/A"));
+        assertArrayEquals(new byte[0], third.get("a/B"));
+    }
+
+    @Test
+    public void testNoChanges() throws IOException {
+        Path dir = folder.newFolder("snapshots").toPath();
+        Path jar = writeJar("a/A");
+        DatabaseSnapshot.open(dir, jar, "sig").save();
+        Set<String> files = files(dir);
+        DatabaseSnapshot.open(dir, jar, "sig").save();
+        assertEquals(files, files(dir));
+    }
+
+    @Test
+    public void testInvalidation() throws IOException {
+        Path dir = folder.newFolder("snapshots").toPath();
+        Path jar = writeJar("a/A");
+        DatabaseSnapshot snapshot = DatabaseSnapshot.open(dir, jar, "sig");
+        snapshot.put("a/A", RECORD);
+        snapshot.save();
+        assertNull(DatabaseSnapshot.open(dir, jar, "otherSig").get("a/A"));
+        assertArrayEquals(RECORD, DatabaseSnapshot.open(dir, jar, "sig").get("a/A"));
+        writeJar("a/A", "a/B");
+        DatabaseSnapshot changed = DatabaseSnapshot.open(dir, jar, "sig");
+        assertTrue(changed.contains("a/B"));
+        assertNull(changed.get("a/A"));
+    }
+
+    @Test
+    public void testChecksumCache() throws IOException {
+        Path dir = folder.newFolder("snapshots").toPath();
+        Path jar = writeJar("a/A");
+        DatabaseSnapshot.open(dir, jar, "sig");
+        Path checksumFile;
+        try (Stream<Path> list = Files.list(dir)) {
+            checksumFile = list.filter(f -> f.getFileName().toString().endsWith(".checksum")).findFirst().get();
+        }
+        String line = new String(Files.readAllBytes(checksumFile), StandardCharsets.UTF_8);
+        String checksum = line.substring(line.lastIndexOf(' ') + 1);
+        // the stored checksum is trusted while the size and the modification time match
+        Files.write(checksumFile, line.replace(checksum, "cached").getBytes(StandardCharsets.UTF_8));
+        DatabaseSnapshot.open(dir, jar, "sig");
+        assertTrue(files(dir).toString(), files(dir).stream().anyMatch(f -> f.startsWith("dep.jar-cached-")));
+
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(Files.getLastModifiedTime(jar).toMillis() - 10000));
+        DatabaseSnapshot.open(dir, jar, "sig");
+        assertTrue(files(dir).toString(), files(dir).stream().anyMatch(f -> f.startsWith("dep.jar-" + checksum
+            + "-")));
+        assertTrue(new String(Files.readAllBytes(checksumFile), StandardCharsets.UTF_8).endsWith(" " + checksum));
+    }
+
+    @Test
+    public void testCorrupted() throws IOException {
+        Path dir = folder.newFolder("snapshots").toPath();
+        Path jar = writeJar("a/A");
+        DatabaseSnapshot snapshot = DatabaseSnapshot.open(dir, jar, "sig");
+        snapshot.put("a/A", RECORD);
+        snapshot.save();
+        Set<String> files = files(dir);
+        assertEquals(1, files.size());
+        Files.write(dir.resolve(files.iterator().next()), new byte[] { 'H', 'B' });
+        DatabaseSnapshot recreated = DatabaseSnapshot.open(dir, jar, "sig");
+        assertTrue(recreated.contains("a/A"));
+        assertNull(recreated.get("a/A"));
+        assertTrue(files(dir).toString(), files(dir).stream().allMatch(f -> f.endsWith(".0.snapshot")));
+    }
+
+    @Test
+    public void testAnalysis() throws IOException {
+        String snapshotDir = folder.newFolder().toString();
+        Context first = AnalysisFixture.checkSameResult(options -> options.snapshotDir = snapshotDir);
+        assertEquals(0, first.getStat("SnapshotClasses"));
+        assertTrue(first.getStat("SnapshotClasses.Total") > 0);
+        Context second = AnalysisFixture.checkSameResult(options -> options.snapshotDir = snapshotDir);
+        assertEquals(first.getStat("SnapshotClasses.Total"), second.getStat("SnapshotClasses"));
+    }
+
+    @Test
+    public void testHierarchyRecord() throws IOException {
+        TypeDefinition td = new MetadataSystem().lookupType("java/util/ArrayList").resolve();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DataOutputStream dos = new DataOutputStream(out)) {
+            new Hierarchy().writeType(td, dos);
+        }
+        Hierarchy hierarchy = new Hierarchy();
+        try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            hierarchy.readType("java/util/ArrayList", dis);
+            assertEquals(-1, dis.read());
+        }
+        Hierarchy.TypeHierarchy th = hierarchy.get("java/util/ArrayList");
+        assertTrue(th.isResolved());
+        assertEquals(new TreeSet<>(Arrays.asList("java/util/AbstractList", "java/util/List",
+            "java/util/RandomAccess", "java/lang/Cloneable", "java/io/Serializable")), th.getSuperClasses().stream()
+                .map(Hierarchy.TypeHierarchy::getInternalName).collect(Collectors.toCollection(TreeSet::new)));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.flow;
+
+import static org.junit.Assert.*;
+
+import com.strobel.assembler.metadata.JvmType;
+import com.strobel.decompiler.ast.AstCode;
+
+import org.junit.Test;
+
+/**
+ * @author lan
+ *
+ */
+public class ConstantFolderTest {
+    @Test
+    public void testShiftMasking() {
+        assertEquals(Long.class, ConstantFolder.getOperandType(AstCode.Shl, JvmType.Long));
+        assertEquals(2, ConstantFolder.fold(AstCode.Shl, 1, 33));
+        assertEquals(Integer.MIN_VALUE, ConstantFolder.fold(AstCode.Shl, 1, -1));
+        assertEquals(-1, ConstantFolder.fold(AstCode.Shr, -1, 32));
+        assertEquals(Integer.MAX_VALUE, ConstantFolder.fold(AstCode.UShr, -1, 33));
+        assertEquals(-1, ConstantFolder.fold(AstCode.UShr, -1, 32));
+        // Shift count of long shifts is int and masked by 63
+        assertEquals(2L, ConstantFolder.fold(AstCode.Shl, 1L, 65));
+        assertEquals(1L, ConstantFolder.fold(AstCode.Shl, 1L, 64));
+        assertEquals(Long.MIN_VALUE, ConstantFolder.fold(AstCode.Shl, 1L, -1));
+        assertEquals(Long.MAX_VALUE, ConstantFolder.fold(AstCode.UShr, -1L, 65));
+        assertEquals(1L << 32, ConstantFolder.fold(AstCode.Shl, 1L, 32));
+    }
+
+    @Test
+    public void testMinValueDivision() {
+        assertEquals(Integer.MIN_VALUE, ConstantFolder.fold(AstCode.Div, Integer.MIN_VALUE, -1));
+        assertEquals(0, ConstantFolder.fold(AstCode.Rem, Integer.MIN_VALUE, -1));
+        assertEquals(Integer.MAX_VALUE, ConstantFolder.fold(AstCode.Neg, Integer.MIN_VALUE + 1));
+        assertEquals(Integer.MIN_VALUE, ConstantFolder.fold(AstCode.Neg, Integer.MIN_VALUE));
+        assertEquals(Long.MIN_VALUE, ConstantFolder.fold(AstCode.Div, Long.MIN_VALUE, -1L));
+        assertEquals(0L, ConstantFolder.fold(AstCode.Rem, Long.MIN_VALUE, -1L));
+    }
+
+    @Test
+    public void testDivisionByZero() {
+        assertNull(ConstantFolder.fold(AstCode.Div, 1, 0));
+        assertNull(ConstantFolder.fold(AstCode.Rem, 1, 0));
+        assertNull(ConstantFolder.fold(AstCode.Div, 0, 0));
+        assertNull(ConstantFolder.fold(AstCode.Div, 1L, 0L));
+        assertNull(ConstantFolder.fold(AstCode.Rem, 1L, 0L));
+        assertEquals(-3, ConstantFolder.fold(AstCode.Rem, -7, 4));
+        assertEquals(-1L, ConstantFolder.fold(AstCode.Div, -7L, 4L));
+        // Floating point division by zero is well-defined
+        assertEquals(Float.POSITIVE_INFINITY, ConstantFolder.fold(AstCode.Div, 1.0f, 0.0f));
+        assertEquals(Double.NEGATIVE_INFINITY, ConstantFolder.fold(AstCode.Div, -1.0, 0.0));
+        assertEquals(Double.NaN, ConstantFolder.fold(AstCode.Rem, 1.0, 0.0));
+        assertEquals(Float.NaN, ConstantFolder.fold(AstCode.Div, 0.0f, 0.0f));
+    }
+
+    @Test
+    public void testNotFoldable() {
+        assertNull(ConstantFolder.fold(AstCode.Shl, 1.0, 1.0));
+        assertNull(ConstantFolder.fold(AstCode.And, 1.0f, 1.0f));
+        assertNull(ConstantFolder.fold(AstCode.I2B, 1L));
+        assertNull(ConstantFolder.fold(AstCode.Add, "a", "b"));
+    }
+
+    @Test
+    public void testNaNComparison() {
+        // Whether javac used CmpG or CmpL, every ordered comparison with NaN is false
+        AstCode[] ordered = { AstCode.CmpLt, AstCode.CmpLe, AstCode.CmpGt, AstCode.CmpGe, AstCode.CmpEq };
+        for (AstCode code : ordered) {
+            assertEquals(code.toString(), false, ConstantFolder.fold(code, Double.NaN, 1.0));
+            assertEquals(code.toString(), false, ConstantFolder.fold(code, 1.0, Double.NaN));
+            assertEquals(code.toString(), false, ConstantFolder.fold(code, Double.NaN, Double.NaN));
+            assertEquals(code.toString(), false, ConstantFolder.fold(code, Float.NaN, 1.0f));
+            assertEquals(code.toString(), false, ConstantFolder.fold(code, 1.0f, Float.NaN));
+            assertEquals(code.toString(), false, ConstantFolder.fold(code, Float.NaN, Float.NaN));
+        }
+        assertEquals(true, ConstantFolder.fold(AstCode.CmpNe, Double.NaN, Double.NaN));
+        assertEquals(true, ConstantFolder.fold(AstCode.CmpNe, Float.NaN, 1.0f));
+        assertEquals(true, ConstantFolder.fold(AstCode.CmpEq, 0.0, -0.0));
+        assertEquals(false, ConstantFolder.fold(AstCode.CmpLt, -0.0f, 0.0f));
+    }
+
+    @Test
+    public void testNarrowing() {
+        assertEquals(Integer.class, ConstantFolder.getOperandType(AstCode.I2B, JvmType.Byte));
+        assertEquals(-56, ConstantFolder.fold(AstCode.I2B, 200));
+        assertEquals(127, ConstantFolder.fold(AstCode.I2B, 0x17F));
+        assertEquals(65535, ConstantFolder.fold(AstCode.I2C, -1));
+        assertEquals(0, ConstantFolder.fold(AstCode.I2C, 0x10000));
+        assertEquals(-25536, ConstantFolder.fold(AstCode.I2S, 40000));
+        assertEquals(-1, ConstantFolder.fold(AstCode.I2S, 0xFFFF));
+        assertEquals(1, ConstantFolder.fold(AstCode.L2I, 0x1_0000_0001L));
+        assertEquals(Integer.MIN_VALUE, ConstantFolder.fold(AstCode.L2I, 0x8000_0000L));
+        assertEquals(-1, ConstantFolder.fold(AstCode.L2I, -1L));
+        // Results keep the stack type: narrowed ints stay Integer
+        assertEquals(Integer.class, ConstantFolder.fold(AstCode.I2B, 1).getClass());
+        assertEquals(Integer.class, ConstantFolder.fold(AstCode.L2I, 1L).getClass());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.output;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import one.util.huntbugs.analysis.AnalysisOptions;
+import one.util.huntbugs.analysis.Context;
+import one.util.huntbugs.warning.Warning;
+import one.util.huntbugs.warning.WarningAnnotation;
+import one.util.huntbugs.warning.WarningAnnotation.TypeInfo;
+import one.util.huntbugs.warning.WarningType;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author lan
+ *
+ */
+public class HtmlReportWriterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void addWarnings(Context ctx, String category, int count) {
+        WarningType type = new WarningType(category, "Type" + category.hashCode(), 60);
+        for (int i = 0; i < count; i++) {
+            WarningAnnotation<?> anno = new WarningAnnotation<>("TYPE", new TypeInfo(className(i)));
+            ctx.addWarning(new Warning(type, 0, Arrays.asList(anno)));
+        }
+    }
+
+    // Zero-padded, so the report order of the warnings matches their numbers
+    private static String className(int i) {
+        return String.format("pkg/Class%04d", i);
+    }
+
+    private static Set<String> pages(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(f -> f.getFileName().toString()).filter(f -> !f.equals("report.html")).collect(
+                Collectors.toCollection(TreeSet::new));
+        }
+    }
+
+    @Test
+    public void testPageNames() throws IOException {
+        Context ctx = new Context(null, new AnalysisOptions());
+        // "A.B" and "A_B" are sanitized to the same name, the second page of "X" looks like the first page of "X-2"
+        addWarnings(ctx, "A.B", 1);
+        addWarnings(ctx, "A_B", 1);
+        addWarnings(ctx, "X", HtmlReportWriter.PAGE_SIZE + 1);
+        addWarnings(ctx, "X-2", 1);
+        Path dir = folder.getRoot().toPath();
+        new HtmlReportWriter(dir.resolve("report.html")).write(ctx);
+        Set<String> pages = pages(dir);
+        assertEquals(pages.toString(), 5, pages.size());
+        String report = new String(Files.readAllBytes(dir.resolve("report.html")), "UTF-8");
+        for (String page : pages) {
+            assertTrue(page, report.contains("href=\"" + page + "\""));
+        }
+        List<String> warningCounts = pages.stream().map(page -> {
+            try {
+                String content = new String(Files.readAllBytes(dir.resolve(page)), "UTF-8");
+                return page.replaceFirst("report-\\d+-", "") + ":" + content.contains(className(0)) + ":"
+                    + content.contains(className(HtmlReportWriter.PAGE_SIZE));
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        }).sorted().collect(Collectors.toList());
+        assertEquals(Arrays.asList("A_B.html:true:false", "A_B.html:true:false", "X-2.html:false:true",
+            "X-2.html:true:false", "X.html:true:false"), warningCounts);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.registry;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * @author lan
+ *
+ */
+public class DetectorProfileTest {
+    public static class EmptyDetector {
+    }
+
+    @Test
+    public void testAccounting() throws Exception {
+        Detector detector = new Detector(Collections.emptyMap(), EmptyDetector.class, new DatabaseRegistry(null));
+        DetectorProfile empty = detector.getProfile();
+        assertEquals(0, empty.getCalls());
+        assertEquals(0, empty.getTime());
+
+        Detector.enableAllocationAccounting();
+        long allocatedBefore, minTime;
+        try {
+            allocatedBefore = Detector.allocatedBytes();
+            long start = System.nanoTime(), startAllocated = Detector.allocatedBytes();
+            byte[] data = new byte[1 << 20];
+            Thread.sleep(10);
+            minTime = System.nanoTime() - start;
+            detector.addProfile(start, startAllocated);
+            detector.addProfile(System.nanoTime(), Detector.allocatedBytes());
+            assertEquals(1 << 20, data.length);
+        } finally {
+            Detector.restoreAllocationAccounting();
+        }
+
+        DetectorProfile profile = detector.getProfile();
+        assertEquals(2, profile.getCalls());
+        assertTrue(profile.getTime() >= minTime);
+        if (allocatedBefore < 0)
+            assertEquals(-1, profile.getAllocated());
+        else
+            assertTrue(String.valueOf(profile.getAllocated()), profile.getAllocated() >= 1 << 20);
+    }
+
+    @Test
+    public void testAllocationAccountingRestored() throws Exception {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(sunBean.isThreadAllocatedMemorySupported());
+        boolean wasEnabled = sunBean.isThreadAllocatedMemoryEnabled();
+        sunBean.setThreadAllocatedMemoryEnabled(false);
+        try {
+            assertEquals(-1, Detector.allocatedBytes());
+            Detector.enableAllocationAccounting();
+            Detector.enableAllocationAccounting();
+            assertTrue(sunBean.isThreadAllocatedMemoryEnabled());
+            Detector.restoreAllocationAccounting();
+            // still used by another analysis
+            assertTrue(sunBean.isThreadAllocatedMemoryEnabled());
+            Detector.restoreAllocationAccounting();
+            assertFalse(sunBean.isThreadAllocatedMemoryEnabled());
+
+            Detector detector = new Detector(Collections.emptyMap(), EmptyDetector.class, new DatabaseRegistry(null));
+            detector.addProfile(System.nanoTime(), Detector.allocatedBytes());
+            assertEquals(-1, detector.getProfile().getAllocated());
+        } finally {
+            sunBean.setThreadAllocatedMemoryEnabled(wasEnabled);
+        }
+    }
+
+    @Test
+    public void testToString() {
+        assertEquals("internal.Test: 3 calls, 1.500 ms, 2.000 MB allocated", new DetectorProfile("internal.Test", 3,
+                1_500_000, 2 << 20).toString());
+        assertEquals("internal.Test: 1 calls, 0.001 ms", new DetectorProfile("internal.Test", 1, 1_000, -1)
+                .toString());
+    }
+}
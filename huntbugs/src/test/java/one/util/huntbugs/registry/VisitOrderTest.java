@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.registry;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import one.util.huntbugs.analysis.AnalysisOptions;
+import one.util.huntbugs.analysis.Context;
+import one.util.huntbugs.assertions.MemberAsserter;
+import one.util.huntbugs.registry.anno.ClassVisitor;
+import one.util.huntbugs.registry.anno.MethodVisitor;
+import one.util.huntbugs.registry.anno.VisitOrder;
+
+import org.junit.Test;
+
+import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.assembler.metadata.MethodDefinition;
+import com.strobel.assembler.metadata.TypeDefinition;
+
+/**
+ * @author lan
+ *
+ */
+public class VisitOrderTest {
+    static final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+    public static class OrderDetector {
+        @MethodVisitor
+        public boolean visitMethod(MethodDefinition md) {
+            calls.add("method " + md.getName());
+            return true;
+        }
+
+        @MethodVisitor(order = VisitOrder.AFTER)
+        public void visitMethodAfter(MethodDefinition md) {
+            calls.add("after method " + md.getName());
+        }
+
+        @ClassVisitor(order = VisitOrder.AFTER)
+        public boolean visitClassAfter(TypeDefinition td) {
+            calls.add("after class " + td.getSimpleName());
+            return false;
+        }
+    }
+
+    @Test
+    public void testAfterVisitors() throws Exception {
+        Context ctx = new Context(null, new AnalysisOptions());
+        Detector detector = new Detector(Collections.emptyMap(), OrderDetector.class, new DatabaseRegistry(ctx));
+        TypeDefinition td = new MetadataSystem().lookupType("java/lang/Object").resolve();
+        MethodDefinition md = td.getDeclaredMethods().stream().filter(m -> m.getName().equals("hashCode"))
+                .findFirst().get();
+        ClassContext cc = new ClassContext(ctx, td, detector);
+        calls.clear();
+        assertTrue(cc.visitClass());
+        MethodContext mc = cc.forMethod(new MethodData(md, MemberAsserter.forMember(md)));
+        assertTrue(mc.visitMethod());
+        mc.visitAfterMethod();
+        cc.visitAfterClass();
+        assertEquals(0, ctx.getErrorCount());
+        assertEquals(Arrays.asList("method hashCode", "after method hashCode", "after class Object"), calls);
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.repo;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.strobel.assembler.metadata.Buffer;
+import com.strobel.assembler.metadata.ITypeLoader;
+
+/**
+ * @author lan
+ *
+ */
+public class MappedJarTest {
+    private static final byte[] STORED_BYTES = "stored class".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DEFLATED_BYTES = new byte[10000];
+
+    static {
+        for (int i = 0; i < DEFLATED_BYTES.length; i++)
+            DEFLATED_BYTES[i] = (byte) (i % 7 * i);
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path writeJar() throws IOException {
+        Path path = folder.newFile("test.jar").toPath();
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(path))) {
+            zos.putNextEntry(new ZipEntry("a/"));
+            ZipEntry stored = new ZipEntry("a/Stored.class");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(STORED_BYTES.length);
+            CRC32 crc = new CRC32();
+            crc.update(STORED_BYTES);
+            stored.setCrc(crc.getValue());
+            zos.putNextEntry(stored);
+            zos.write(STORED_BYTES);
+            zos.putNextEntry(new ZipEntry("a/Inflate.class"));
+            zos.write(DEFLATED_BYTES);
+        }
+        return path;
+    }
+
+    private static byte[] load(ITypeLoader loader, String name) {
+        Buffer buffer = new Buffer();
+        if (!loader.tryLoadType(name, buffer))
+            return null;
+        return Arrays.copyOf(buffer.array(), buffer.size());
+    }
+
+    private static ByteBuffer bytes(Path path) throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int centralHeader(ByteBuffer buf, int index) {
+        int pos = buf.getInt(buf.limit() - 22 + 16);
+        for (int i = 0; i < index; i++)
+            pos += 46 + buf.getShort(pos + 28) + buf.getShort(pos + 30) + buf.getShort(pos + 32);
+        return pos;
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        MappedJar jar = MappedJar.open(writeJar());
+        assertNotNull(jar);
+        assertEquals(Arrays.asList("a/", "a/Stored.class", "a/Inflate.class"), jar.getNames());
+        ITypeLoader loader = jar.createTypeLoader();
+        assertArrayEquals(STORED_BYTES, load(loader, "a/Stored"));
+        assertArrayEquals(DEFLATED_BYTES, load(loader, "a/Inflate"));
+        // read again to check that the loader state is reused correctly
+        assertArrayEquals(DEFLATED_BYTES, load(loader, "a/Inflate"));
+        assertArrayEquals(STORED_BYTES, load(jar.createTypeLoader(), "a/Stored"));
+        assertNull(load(loader, "a/Missing"));
+    }
+
+    @Test
+    public void testDuplicateNames() throws IOException {
+        Path path = writeJar();
+        ByteBuffer buf = bytes(path);
+        // Rename a/Inflate.class to a/Stored.class in the central directory: ZipOutputStream does not allow duplicates
+        int pos = centralHeader(buf, 2);
+        byte[] name = "a/Stored.class".getBytes(StandardCharsets.UTF_8);
+        assertEquals(name.length + 1, buf.getShort(pos + 28));
+        buf.putShort(pos + 28, (short) name.length);
+        buf.position(pos + 46);
+        buf.put(name);
+        // Keep the central directory consistent: the rest of the old name goes to the extra field
+        buf.putShort(pos + 30, (short) (buf.getShort(pos + 30) + 1));
+        Files.write(path, buf.array());
+
+        MappedJar jar = MappedJar.open(path);
+        assertNotNull(jar);
+        assertEquals(Arrays.asList("a/", "a/Stored.class", "a/Stored.class"), jar.getNames());
+        // The first entry wins like in ZipFile
+        assertArrayEquals(STORED_BYTES, load(jar.createTypeLoader(), "a/Stored"));
+        assertEquals(1, new JarRepository(path).getClassNames().size());
+    }
+
+    @Test
+    public void testZip64() throws IOException {
+        Path path = folder.newFile("zip64.jar").toPath();
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(path))) {
+            // more entries than the plain end record can hold
+            for (int i = 0; i < 0xFFFF; i++) {
+                zos.putNextEntry(new ZipEntry("a/C" + i + ".class"));
+            }
+        }
+        assertNull(MappedJar.open(path));
+        // the repository falls back to JarFile
+        assertEquals(0xFFFF, new JarRepository(path).getClassNames().size());
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testJarFileRepository() throws IOException {
+        try (JarFile file = new JarFile(writeJar().toFile())) {
+            JarRepository repository = new JarRepository(file);
+            assertEquals(new HashSet<>(Arrays.asList("a/Stored", "a/Inflate")), repository.getClassNames());
+            assertArrayEquals(DEFLATED_BYTES, load(repository.createTypeLoader(), "a/Inflate"));
+        }
+    }
+
+    @Test
+    public void testTooBig() throws IOException {
+        Path path = folder.newFile("big.jar").toPath();
+        try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "rw")) {
+            // sparse file, no disk space is actually used
+            raf.setLength(Integer.MAX_VALUE + 1L);
+        }
+        assertNull(MappedJar.open(path));
+    }
+
+    @Test
+    public void testNotJar() throws IOException {
+        Path path = folder.newFile("text.jar").toPath();
+        try (OutputStream os = Files.newOutputStream(path)) {
+            os.write("not a jar".getBytes(StandardCharsets.UTF_8));
+        }
+        try {
+            MappedJar.open(path);
+            fail("Exception expected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Not a jar file"));
+        }
+    }
+
+    @Test
+    public void testBadNameLength() throws IOException {
+        Path path = writeJar();
+        ByteBuffer buf = bytes(path);
+        buf.putShort(centralHeader(buf, 2) + 28, (short) 0xFFFF);
+        Files.write(path, buf.array());
+        try {
+            MappedJar.open(path);
+            fail("Exception expected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid central directory"));
+        }
+    }
+
+    @Test
+    public void testBadCentralHeader() throws IOException {
+        Path path = writeJar();
+        ByteBuffer buf = bytes(path);
+        buf.putInt(centralHeader(buf, 1), 0);
+        Files.write(path, buf.array());
+        try {
+            MappedJar.open(path);
+            fail("Exception expected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid central directory"));
+        }
+    }
+
+    @Test
+    public void testBadLocalHeader() throws IOException {
+        Path path = writeJar();
+        ByteBuffer buf = bytes(path);
+        int stored = centralHeader(buf, 1);
+        buf.putInt(buf.getInt(stored + 42), 0);
+        // local header offset of a/Inflate.class points outside of the file
+        buf.putInt(centralHeader(buf, 2) + 42, buf.limit() - 10);
+        Files.write(path, buf.array());
+        MappedJar jar = MappedJar.open(path);
+        assertNotNull(jar);
+        ITypeLoader loader = jar.createTypeLoader();
+        for (String name : Arrays.asList("a/Stored", "a/Inflate")) {
+            try {
+                load(loader, name);
+                fail("Exception expected");
+            } catch (IllegalStateException e) {
+                assertEquals("Unable to read " + name, e.getMessage());
+                assertEquals("Invalid local header", e.getCause().getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testBadDeflatedData() throws IOException {
+        Path path = writeJar();
+        ByteBuffer buf = bytes(path);
+        int central = centralHeader(buf, 2);
+        int local = buf.getInt(central + 42);
+        int data = local + 30 + buf.getShort(local + 26) + buf.getShort(local + 28);
+        // stored block header with mismatching length and its complement
+        for (int i = 0; i < 5; i++)
+            buf.put(data + i, (byte) 0);
+        Files.write(path, buf.array());
+        try {
+            load(MappedJar.open(path).createTypeLoader(), "a/Inflate");
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            assertEquals("Unable to read a/Inflate", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015, 2016 Tagir Valeev
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package one.util.huntbugs.testdata;
+
+import java.util.List;
+
+import one.util.huntbugs.registry.anno.AssertNoWarning;
+import one.util.huntbugs.registry.anno.AssertWarning;
+
+/**
+ * @author lan
+ *
+ */
+public class TestLoopWidening {
+    interface Step {
+        double getTime();
+    }
+
+    private List<Step> steps;
+    private int index;
+    private boolean forward;
+
+    private int locate(double time, Step step) {
+        double diff = forward ? time - step.getTime() : step.getTime() - time;
+        return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+    }
+
+    @AssertWarning(type = "IntegerDivisionPromotedToFloat")
+    public void search(double time) {
+        int iMin = 0;
+        int iMax = steps.size() - 1;
+        double tMin = steps.get(iMin).getTime();
+        double tMax = steps.get(iMax).getTime();
+        while (iMax - iMin > 5) {
+            Step step = steps.get(index);
+            int location = locate(time, step);
+            if (location < 0) {
+                iMax = index;
+                tMax = step.getTime();
+            } else if (location > 0) {
+                iMin = index;
+                tMin = step.getTime();
+            } else {
+                return;
+            }
+            int iMed = (iMin + iMax) / 2;
+            double tMed = steps.get(iMed).getTime();
+            if (Math.abs(tMed - tMin) < 1e-6 || Math.abs(tMax - tMed) < 1e-6) {
+                index = iMed;
+            } else {
+                double ratio = ((time - tMax) * iMin + (time - tMin) * iMed) / (tMax - tMin);
+                index = (int) Math.rint(ratio);
+            }
+            int low = Math.max(iMin + 1, (9 * iMin + iMax) / 10);
+            int high = Math.min(iMax - 1, (iMin + 9 * iMax) / 10);
+            if (index < low)
+                index = low;
+            else if (index > high)
+                index = high;
+        }
+    }
+
+    @AssertNoWarning(type = "IntegerDivisionPromotedToFloat")
+    public void searchLinear(double time) {
+        int iMin = 0;
+        int iMax = steps.size() - 1;
+        double tMin = steps.get(iMin).getTime();
+        double tMax = steps.get(iMax).getTime();
+        while (iMax - iMin > 5) {
+            Step step = steps.get(index);
+            int location = locate(time, step);
+            if (location < 0) {
+                iMax = index;
+                tMax = step.getTime();
+            } else if (location > 0) {
+                iMin = index;
+                tMin = step.getTime();
+            } else {
+                return;
+            }
+            int iMed = (iMin + iMax) / 2;
+            double tMed = steps.get(iMed).getTime();
+            if (Math.abs(tMed - tMin) < 1e-6 || Math.abs(tMax - tMed) < 1e-6) {
+                index = iMed;
+            } else {
+                double ratio = ((time - tMax) * iMin + (time - tMin) * index) / (tMax - tMin);
+                index = (int) Math.rint(ratio);
+            }
+            int low = Math.max(iMin + 1, (9 * iMin + iMax) / 10);
+            int high = Math.min(iMax - 1, (iMin + 9 * iMax) / 10);
+            if (index < low)
+                index = low;
+            else if (index > high)
+                index = high;
+        }
+    }
+}
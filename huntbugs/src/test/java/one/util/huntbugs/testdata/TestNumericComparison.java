@@ -92,6 +92,19 @@ public class TestNumericComparison {
         }
     }
 
+    @AssertWarning(type="SwitchBranchUnreachable")
+    public int testMaskSwitch(int x) {
+        int mask = 0xF;
+        switch(x & mask) {
+        case 1:
+            return 10;
+        case 16:
+            return 20;
+        default:
+            return 0;
+        }
+    }
+
     @AssertNoWarning(type="SwitchBranchUnreachable")
     public int testArrayLengthSwitchOk(int[] array) {
         switch(array.length) {
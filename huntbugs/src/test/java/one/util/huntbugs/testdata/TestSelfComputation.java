@@ -24,6 +24,8 @@ import one.util.huntbugs.registry.anno.AssertWarning;
  *
  */
 public class TestSelfComputation {
+    int f;
+
     @AssertWarning(type = "SelfComputation")
     public int test(int a, int b) {
         return (a - b) / (a - b);
@@ -34,6 +36,12 @@ public class TestSelfComputation {
         return x[1] - x[1];
     }
 
+    @AssertWarning(type = "SelfComputation")
+    public int testField() {
+        int a = f;
+        return a - a;
+    }
+
     @AssertWarning(type = "SelfComparison")
     public boolean testCmp(int[] x) {
         return x[1] == x[1];